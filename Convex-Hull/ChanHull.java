@@ -0,0 +1,220 @@
+import java.util.Arrays;
+
+/**
+ * Chan's output-sensitive hull, O(n log h) for h hull vertices.
+ * <p>
+ * The points are split into groups of m, and each group's hull
+ * is found with the monotone chain. A gift wrap then walks the
+ * whole hull, finding the next vertex by a binary search along
+ * every group's hull. If the walk takes more than m steps, m was
+ * too small: it is squared and everything starts over, so m goes
+ * 4, 16, 256, 65536 and so on, until it is at least h.
+ * <p>
+ * The walk is done as a lower hull, from the leftmost point to
+ * the rightmost, and an upper hull back. Each step only looks at
+ * points past the current one in sorted order, and these all lie
+ * on one side of it, so each group's lower (or upper) hull can
+ * be searched as a plain sequence rather than a cycle.
+ **/
+public class ChanHull implements ConvexHullFinder
+{
+	public int[] computeHull( double[] xs, double[] ys )
+	{
+		/* Local Variables */
+		HullPoints points = new HullPoints( xs, ys );
+		int first = 0;
+		int last  = 0;
+		
+		if ( 0 == points.size() )
+			return new int[0];
+		
+		/* Find the ends of the lower and upper hulls */
+		for ( int i = 1; i < points.size(); i++ )
+		{
+			if ( points.compare( i, first ) < 0 )
+				first = i;
+			if ( points.compare( i, last ) > 0 )
+				last = i;
+		}
+		
+		/* Try ever larger groups until the walk fits */
+		for ( long m = 4; ; m *= m )
+		{
+			int groupSize = (int)Math.min( m, points.size() );
+			int[] hull = new Groups( points, groupSize ).wrap( first, last );
+			
+			if ( null != hull )
+				return hull;
+		}
+	}
+	
+	/**
+	 * The points split into groups, each with its hull.
+	 **/
+	private static class Groups
+	{
+		final HullPoints points;
+		final int groupSize;
+		
+		/* Each group's hull, counterclockwise from its lowest point */
+		final int[] hulls;
+		final int[] starts;
+		final int[] sizes;
+		
+		/* Where in each group's hull its highest point is */
+		final int[] tops;
+		
+		Groups( HullPoints points, int groupSize )
+		{
+			/* Local Variables */
+			int n = points.size();
+			int count = ( n - 1 ) / groupSize + 1;
+			int[] order = new int[n];
+			
+			this.points    = points;
+			this.groupSize = groupSize;
+			this.hulls     = new int[n + count];
+			this.starts    = new int[count];
+			this.sizes     = new int[count];
+			this.tops      = new int[count];
+			
+			for ( int i = 0; i < n; i++ )
+				order[i] = i;
+			
+			for ( int g = 0; g < count; g++ )
+			{
+				int lo  = g * groupSize;
+				int end = points.sortUnique( order, lo,
+				                             Math.min( n, lo + groupSize ) );
+				
+				starts[g] = lo + g;
+				sizes[g]  = MonotoneChainHull.chain( points, order, lo, end,
+				                                     hulls, starts[g] );
+				for ( int i = 1; i < sizes[g]; i++ )
+					if ( points.compare( vertex( g, i ),
+					                     vertex( g, tops[g] ) ) > 0 )
+						tops[g] = i;
+			}
+		}
+		
+		/**
+		 * Walks the hull from first, the lowest point, round to
+		 * last, the highest, and back. Returns the hull, or null
+		 * if it has more than groupSize vertices.
+		 **/
+		int[] wrap( int first, int last )
+		{
+			/* Local Variables */
+			int[] hull = new int[groupSize];
+			int size = 0;
+			int p = first;
+			
+			hull[size++] = p;
+			
+			/* Lower hull */
+			while ( 0 != points.compare( p, last ) )
+			{
+				p = next( p, 1 );
+				if ( size == groupSize )
+					return null;
+				hull[size++] = p;
+			}
+			
+			/* Upper hull */
+			while ( true )
+			{
+				p = next( p, -1 );
+				if ( -1 == p || 0 == points.compare( p, first ) )
+					break;
+				if ( size == groupSize )
+					return null;
+				hull[size++] = p;
+			}
+			
+			return Arrays.copyOf( hull, size );
+		}
+		
+		/**
+		 * Returns the hull vertex after p, looking at points above
+		 * p in sorted order if sign is 1 (the lower hull) or below
+		 * it if sign is -1 (the upper hull); -1 if there are none.
+		 **/
+		private int next( int p, int sign )
+		{
+			/* Local Variables */
+			int best = -1;
+			
+			for ( int g = 0; g < sizes.length; g++ )
+			{
+				int q = 1 == sign ? tangent( g, p, 0, tops[g], 1 ) :
+				                    tangent( g, p, tops[g], sizes[g], -1 );
+				
+				if ( -1 != q && ( -1 == best || isBetter( p, q, best ) ) )
+					best = q;
+			}
+			return best;
+		}
+		
+		/**
+		 * Finds the best next vertex after p along positions
+		 * [from, to] of group g's hull, which run through the
+		 * points in sorted order if sign is 1, or backwards if -1.
+		 * Only points past p in that order count; -1 if none are.
+		 **/
+		private int tangent( int g, int p, int from, int to, int sign )
+		{
+			/* Local Variables */
+			int lo = from;
+			int hi = to + 1;
+			
+			/* Find the first point past p */
+			while ( lo < hi )
+			{
+				int mid = ( lo + hi ) >>> 1;
+				if ( sign * points.compare( vertex( g, mid ), p ) > 0 )
+					hi = mid;
+				else
+					lo = mid + 1;
+			}
+			if ( lo > to )
+				return -1;
+			
+			/* Seen from p, the points after it turn right, then left;
+			 * find the first one the next does not improve on */
+			hi = to;
+			while ( lo < hi )
+			{
+				int mid = ( lo + hi ) >>> 1;
+				if ( points.cross( p, vertex( g, mid ),
+				                   vertex( g, mid + 1 ) ) <= 0 )
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return vertex( g, lo );
+		}
+		
+		/**
+		 * Returns whether q is a better next vertex after p than
+		 * best: right of the line from p through best, or on it
+		 * and farther out.
+		 **/
+		private boolean isBetter( int p, int q, int best )
+		{
+			double area = points.cross( p, best, q );
+			
+			return area < 0 ||
+			       ( 0 == area && points.distanceSq( p, q ) >
+			                      points.distanceSq( p, best ) );
+		}
+		
+		/**
+		 * Returns the point at a position of group g's hull; its
+		 * size is the same position as 0.
+		 **/
+		private int vertex( int g, int position )
+		{
+			return hulls[starts[g] + position % sizes[g]];
+		}
+	}
+}
@@ -1,6 +1,36 @@
 import java.util.List;
+import java.util.ArrayList;
 import java.awt.geom.Point2D;
 public interface ConvexHullFinder
 {
-	public List<Point2D> computeHull( List<Point2D> points );
+	/**
+	 * Computes the convex hull of points given as parallel arrays
+	 * of coordinates. The hull is returned as the indices of its
+	 * vertices, counterclockwise with y up (so clockwise on the
+	 * screen). Points lying on an edge of the hull are left out,
+	 * and of several equal points at most one is returned.
+	 **/
+	public int[] computeHull( double[] xs, double[] ys );
+	
+	/**
+	 * Computes the convex hull of a list of points by copying
+	 * their coordinates into arrays once; see computeHull( xs, ys ).
+	 **/
+	public default List<Point2D> computeHull( List<Point2D> points )
+	{
+		/* Local Variables */
+		double[] xs = new double[points.size()];
+		double[] ys = new double[points.size()];
+		List<Point2D> hull = new ArrayList<Point2D>();
+		int i = 0;
+		
+		for ( Point2D point : points )
+		{
+			xs[i]   = point.getX();
+			ys[i++] = point.getY();
+		}
+		for ( int index : computeHull( xs, ys ) )
+			hull.add( points.get( index ) );
+		return hull;
+	}
 }
@@ -60,7 +60,7 @@ public class ConvexHullGUI {
 		JPanel controlPanel = new JPanel();
 		controlPanel.setBackground(Color.LIGHT_GRAY);
 		controlPanel.setSize(new Dimension(100, 500));
-		controlPanel.setLayout(new GridLayout(6, 1));
+		controlPanel.setLayout(new GridLayout(8, 1));
 		//controlPanel.setLayout(new FlowLayout());
 		
 		JLabel numPointsLab = new JLabel("     # of points     ");
@@ -124,9 +124,31 @@ public class ConvexHullGUI {
 		});
 		controlPanel.add(mergeButton);
 		
+		JRadioButton chainButton = new JRadioButton("Monotone Chain");
+		chainButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				theConvexHullFinder = new MonotoneChainHull();
+			}	
+		});
+		controlPanel.add(chainButton);
+		
+		JRadioButton chanButton = new JRadioButton("Chan");
+		chanButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				theConvexHullFinder = new ChanHull();
+			}	
+		});
+		controlPanel.add(chanButton);
+		
 		ButtonGroup hullChoice = new ButtonGroup();
 		hullChoice.add(quickButton);
 		hullChoice.add(mergeButton);
+		hullChoice.add(chainButton);
+		hullChoice.add(chanButton);
 		
 		
 		JButton genHull = new JButton("Generate Hull");
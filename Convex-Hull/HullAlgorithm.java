@@ -0,0 +1,57 @@
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * The convex hull finders, so that one can be picked by name,
+ * e.g. HullAlgorithm.forName( "chan" ).create().
+ **/
+public enum HullAlgorithm
+{
+	QUICK_HULL( "QuickHull", QuickHull::new ),
+	PARALLEL_QUICK_HULL( "Parallel QuickHull", ParallelQuickHull::new ),
+	MERGE_HULL( "MergeHull", MergeHull::new ),
+	MONOTONE_CHAIN( "Monotone Chain", MonotoneChainHull::new ),
+	CHAN( "Chan", ChanHull::new );
+	
+	private final String label;
+	private final Supplier<ConvexHullFinder> factory;
+	
+	HullAlgorithm( String label, Supplier<ConvexHullFinder> factory )
+	{
+		this.label   = label;
+		this.factory = factory;
+	}
+	
+	public String getLabel()
+	{
+		return label;
+	}
+	
+	/**
+	 * Returns a new finder running this algorithm.
+	 **/
+	public ConvexHullFinder create()
+	{
+		return factory.get();
+	}
+	
+	/**
+	 * Returns the algorithm with the given constant name or label,
+	 * ignoring case, spaces and underscores.
+	 **/
+	public static HullAlgorithm forName( String name )
+	{
+		String wanted = simplify( name );
+		
+		for ( HullAlgorithm algorithm : values() )
+			if ( simplify( algorithm.name() ).equals( wanted ) ||
+			     simplify( algorithm.label ).equals( wanted ) )
+				return algorithm;
+		throw new IllegalArgumentException( "no hull algorithm named " + name );
+	}
+	
+	private static String simplify( String name )
+	{
+		return name.replaceAll( "[\\s_]", "" ).toLowerCase( Locale.ROOT );
+	}
+}
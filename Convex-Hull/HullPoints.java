@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+/**
+ * Points given as two parallel arrays of coordinates, each named
+ * by its index, with the tests the hull finders share. The
+ * arrays are used as they are; no point is ever boxed.
+ **/
+class HullPoints
+{
+	/* The length of the runs the sorts insertion sort */
+	private static final int RUN = 32;
+	
+	final double[] xs;
+	final double[] ys;
+	
+	HullPoints( double[] xs, double[] ys )
+	{
+		if ( xs.length != ys.length )
+			throw new IllegalArgumentException( "xs has " + xs.length +
+			                                    " points but ys has " +
+			                                    ys.length );
+		this.xs = xs;
+		this.ys = ys;
+	}
+	
+	int size()
+	{
+		return xs.length;
+	}
+	
+	/**
+	 * Returns twice the signed area of the triangle o, a, b:
+	 * positive if it turns counterclockwise (with y up), negative
+	 * if clockwise, and zero if the points are collinear.
+	 **/
+	double cross( int o, int a, int b )
+	{
+		return ( xs[a] - xs[o] ) * ( ys[b] - ys[o] ) -
+		       ( ys[a] - ys[o] ) * ( xs[b] - xs[o] );
+	}
+	
+	/**
+	 * Returns the dot product of a - o and b - o.
+	 **/
+	double dot( int o, int a, int b )
+	{
+		return ( xs[a] - xs[o] ) * ( xs[b] - xs[o] ) +
+		       ( ys[a] - ys[o] ) * ( ys[b] - ys[o] );
+	}
+	
+	double distanceSq( int a, int b )
+	{
+		/* Local Variables */
+		double dx = xs[b] - xs[a];
+		double dy = ys[b] - ys[a];
+		
+		return dx * dx + dy * dy;
+	}
+	
+	/**
+	 * Orders two points by x, then by y.
+	 **/
+	int compare( int a, int b )
+	{
+		if ( xs[a] != xs[b] )
+			return xs[a] < xs[b] ? -1 : 1;
+		if ( ys[a] != ys[b] )
+			return ys[a] < ys[b] ? -1 : 1;
+		return 0;
+	}
+	
+	/**
+	 * Returns the indices of the points sorted by x, then by y,
+	 * keeping only the first of any duplicates.
+	 **/
+	int[] sortedIndices()
+	{
+		/* Local Variables */
+		int[] order = new int[size()];
+		
+		for ( int i = 0; i < order.length; i++ )
+			order[i] = i;
+		return Arrays.copyOf( order, sortUnique( order, 0, order.length ) );
+	}
+	
+	/**
+	 * Sorts the indices in order[lo, hi) by x, then by y, and
+	 * keeps only the first of any duplicates, packed from lo on.
+	 * Returns where they end. Ranges of up to RUN indices are
+	 * sorted without allocating.
+	 **/
+	int sortUnique( int[] order, int lo, int hi )
+	{
+		/* Local Variables */
+		int end = lo;
+		
+		if ( hi - lo <= RUN )
+		{
+			for ( int i = lo + 1; i < hi; i++ )
+				for ( int j = i; j > lo && compare( order[j], order[j-1] ) < 0;
+				      j-- )
+					swap( order, j, j - 1 );
+		}
+		else
+			mergeSort( order, lo, hi );
+		
+		/* Throw out the duplicates */
+		for ( int i = lo; i < hi; i++ )
+			if ( lo == end || 0 != compare( order[end-1], order[i] ) )
+				order[end++] = order[i];
+		return end;
+	}
+	
+	/**
+	 * Stably sorts order[lo, hi) by x, then by y: insertion sorts
+	 * short runs, then merges them bottom up. The x of each index
+	 * moves with it, so comparisons mostly read memory in order
+	 * and only look at y on a tie.
+	 **/
+	private void mergeSort( int[] order, int lo, int hi )
+	{
+		/* Local Variables */
+		int n = hi - lo;
+		int[] indices = Arrays.copyOfRange( order, lo, hi );
+		int[] indexBuffer = new int[n];
+		double[] keys = new double[n];
+		double[] keyBuffer = new double[n];
+		
+		for ( int i = 0; i < n; i++ )
+			keys[i] = xs[indices[i]];
+		
+		for ( int start = 0; start < n; start += RUN )
+			for ( int i = start + 1; i < Math.min( start + RUN, n ); i++ )
+				for ( int j = i; j > start && less( keys[j], indices[j],
+				                                    keys[j-1], indices[j-1] );
+				      j-- )
+				{
+					swap( keys, j, j - 1 );
+					swap( indices, j, j - 1 );
+				}
+		
+		for ( int width = RUN; width < n; width *= 2 )
+		{
+			for ( int start = 0; start < n; start += 2 * width )
+			{
+				int mid = (int)Math.min( (long)start + width, n );
+				int end = (int)Math.min( (long)start + 2 * width, n );
+				int i = start;
+				int j = mid;
+				
+				for ( int k = start; k < end; k++ )
+					if ( j >= end || ( i < mid &&
+					     !less( keys[j], indices[j], keys[i], indices[i] ) ) )
+					{
+						keyBuffer[k]   = keys[i];
+						indexBuffer[k] = indices[i++];
+					}
+					else
+					{
+						keyBuffer[k]   = keys[j];
+						indexBuffer[k] = indices[j++];
+					}
+			}
+			
+			double[] swapKeys = keys;
+			keys = keyBuffer;
+			keyBuffer = swapKeys;
+			int[] swapIndices = indices;
+			indices = indexBuffer;
+			indexBuffer = swapIndices;
+		}
+		System.arraycopy( indices, 0, order, lo, n );
+	}
+	
+	/**
+	 * Orders point a, whose x is ax, before point b, whose x is bx,
+	 * by x and then by y.
+	 **/
+	private boolean less( double ax, int a, double bx, int b )
+	{
+		return ax < bx || ( ax == bx && ys[a] < ys[b] );
+	}
+	
+	private static void swap( int[] array, int i, int j )
+	{
+		int t = array[i];
+		array[i] = array[j];
+		array[j] = t;
+	}
+	
+	private static void swap( double[] array, int i, int j )
+	{
+		double t = array[i];
+		array[i] = array[j];
+		array[j] = t;
+	}
+}
@@ -1,159 +1,188 @@
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Collections;
-import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
+import java.util.Arrays;
 
 public class MergeHull implements ConvexHullFinder
 {
-	class Point2DComparator implements Comparator<Point2D>
+	public int[] computeHull( double[] xs, double[] ys )
 	{
-		public int compare( Point2D o1, Point2D o2 )
-		{
-			if ( o1.getX() < o2.getX() )
-				return -1;
-			else
-				if ( o1.getX() > o2.getX() )
-					return 1;
-				else
-					if ( o1.getY() < o2.getY() )
-						return -1;
-					else
-						if ( o1.getY() > o2.getY() )
-							return 1;
-						else
-							return 0;
-		}
-	}
-	
-	public List<Point2D> computeHull( List<Point2D> points )
-	{
-		Collections.sort( points, new Point2DComparator() );
-		
-		/* Throw out the duplicates */
-		for( int i = 0; i < points.size() - 1; i++ )
-			if ( points.get(i).getX() == points.get(i+1).getX() )
-				while ( points.get(i).getY() == points.get(i+1).getY() )
-					points.remove( i+1 );
-		
-		/* Compute the convex hull */
-		return recursiveMergeHull( points );
-	}
-	
-	private List<Point2D> recursiveMergeHull( List<Point2D> points )
-	{
-		/* Base Case */
-		if ( points.size() <= 2 )
-			return points;
-		
 		/* Local Variables */
-		List<Point2D> leftHalf  = points.subList( 0, points.size()/2 );
-		List<Point2D> rightHalf = points.subList( points.size()/2, points.size() );
+		HullPoints points = new HullPoints( xs, ys );
 		
-		/* Recurse */
-		leftHalf  = recursiveMergeHull( leftHalf );
-		rightHalf = recursiveMergeHull( rightHalf );
+		/* Sort the points and throw out the duplicates */
+		int[] sorted = points.sortedIndices();
 		
-		return mergeHulls( leftHalf, rightHalf);
+		/* Compute the convex hull */
+		int size = new Merger( points, sorted ).recursiveMergeHull( 0,
+		                                                sorted.length );
+		return Arrays.copyOf( sorted, size );
 	}
 	
-	private List<Point2D> mergeHulls( List<Point2D> leftHalf, List<Point2D> rightHalf )
+	/**
+	 * One run of the merge hull. The hull of each range of the
+	 * sorted points is written over the front of that range, so
+	 * the halves being merged sit side by side in one array and
+	 * only a single scratch array is needed to merge them.
+	 **/
+	private static class Merger
 	{
-		int[] seed = { findRightmostPointIndex( leftHalf ),
-		               findLeftmostPointIndex( rightHalf ) };
-		int[] lt = getTangent( leftHalf, rightHalf, seed[0], seed[1] );
-		int[] ut = getTangent( rightHalf, leftHalf, seed[1], seed[0] );
+		final HullPoints points;
+		final int[] hull;
+		final int[] scratch;
 		
-		ArrayList<Point2D> mergedList = new ArrayList();
-		int index = ut[1];
+		/* The ends of the last tangent found, as positions */
+		int tanFirst;
+		int tanSecond;
 		
-		while ( index != lt[0] )
+		Merger( HullPoints points, int[] sorted )
 		{
-			mergedList.add( leftHalf.get(index) );
-			index = getNext( leftHalf, index );
+			this.points  = points;
+			this.hull    = sorted;
+			this.scratch = new int[sorted.length];
 		}
-		mergedList.add( leftHalf.get( lt[0] ) );
 		
-		index = lt[1];
-		while ( index != ut[0] )
+		/**
+		 * Replaces the points in [lo, hi) with the start of their
+		 * hull and returns its size.
+		 **/
+		int recursiveMergeHull( int lo, int hi )
 		{
-			mergedList.add( rightHalf.get(index) );
-			index = getNext( rightHalf, index );
+			/* Base Case */
+			if ( hi - lo <= 2 )
+				return hi - lo;
+			
+			/* Local Variables */
+			int mid = ( lo + hi ) >>> 1;
+			
+			/* Recurse */
+			int leftSize  = recursiveMergeHull( lo, mid );
+			int rightSize = recursiveMergeHull( mid, hi );
+			
+			return mergeHulls( lo, leftSize, mid, rightSize );
 		}
-		mergedList.add( rightHalf.get( ut[0] ) );
 		
-		return mergedList;
-	}
-	
-	private int[] getTangent( List<Point2D> leftHalf, List<Point2D> rightHalf, int a, int b )
-	{
-		int[] tan = {a,b};
-		Line2D t = new Line2D.Double( leftHalf.get(tan[0]), rightHalf.get(tan[1]) );
-		boolean repeat;
-		
-		do
+		private int mergeHulls( int lo, int leftSize, int mid, int rightSize )
 		{
-			repeat = false;
+			int seedLeft  = findRightmostPointIndex( lo, leftSize );
+			int seedRight = findLeftmostPointIndex( mid, rightSize );
 			
-			while ( t.relativeCCW( leftHalf.get( getNext( leftHalf, tan[0] ) ) ) > 0 ||
-			        t.relativeCCW( leftHalf.get( getPrev( leftHalf, tan[0] ) ) ) > 0 )
+			getTangent( lo, leftSize, mid, rightSize, seedLeft, seedRight );
+			int ltLeft  = tanFirst;
+			int ltRight = tanSecond;
+			getTangent( mid, rightSize, lo, leftSize, seedRight, seedLeft );
+			int utRight = tanFirst;
+			int utLeft  = tanSecond;
+			
+			int size = 0;
+			int index = utLeft;
+			
+			while ( index != ltLeft )
 			{
-				tan[0] = getPrev( leftHalf, tan[0] );
-				
-				repeat = true;
-				t = new Line2D.Double( leftHalf.get(tan[0]), rightHalf.get(tan[1]) );
+				scratch[size++] = hull[lo + index];
+				index = getNext( leftSize, index );
 			}
+			scratch[size++] = hull[lo + ltLeft];
 			
-			while ( t.relativeCCW( rightHalf.get( getNext( rightHalf, tan[1] ) ) ) > 0 ||
-			        t.relativeCCW( rightHalf.get( getPrev( rightHalf, tan[1] ) ) ) > 0 )
+			index = ltRight;
+			while ( index != utRight )
 			{
-				tan[1] = getNext( rightHalf, tan[1] );
-				repeat = true;
-				t = new Line2D.Double( leftHalf.get(tan[0]), rightHalf.get(tan[1]) );
+				scratch[size++] = hull[mid + index];
+				index = getNext( rightSize, index );
 			}
-		} while ( repeat );
+			scratch[size++] = hull[mid + utRight];
+			
+			System.arraycopy( scratch, 0, hull, lo, size );
+			return size;
+		}
 		
-		return tan;
-	}
-	
-	private int getPrev( List<Point2D> list, int index )
-	{
-		index+=(list.size()-1);
-		index%= list.size();
-		return index;
-	}
-	
-	private int getNext( List<Point2D> list, int index )
-	{
-		index++;
-		index%= list.size();
-		return index;
-	}
-	
-	private int findLeftmostPointIndex( List<Point2D> points )
-	{
-		/* Local Variables */
-		int index = 0;
+		/**
+		 * Walks a line from point a of the first hull to point b of
+		 * the second until every point of both lies on or left of
+		 * it, moving back around the first hull and forward around
+		 * the second. Collinear points are skipped over, so the ends
+		 * are always hull vertices.
+		 **/
+		private void getTangent( int first, int firstSize,
+		                         int second, int secondSize, int a, int b )
+		{
+			boolean repeat;
+			
+			do
+			{
+				repeat = false;
+				
+				while ( isOutside( hull[second + b], hull[first + a],
+				                   hull[first + getPrev( firstSize, a )], 1 ) )
+				{
+					a = getPrev( firstSize, a );
+					repeat = true;
+				}
+				
+				while ( isOutside( hull[first + a], hull[second + b],
+				                   hull[second + getNext( secondSize, b )],
+				                   -1 ) )
+				{
+					b = getNext( secondSize, b );
+					repeat = true;
+				}
+			} while ( repeat );
+			
+			tanFirst  = a;
+			tanSecond = b;
+		}
 		
-		/* Find leftmost point */
-		for ( int i = 1; i < points.size(); i++ )
-			if ( points.get(i).getX() < points.get(index).getX() )
-				index = i;
+		/**
+		 * Returns whether swinging the line from pivot through end
+		 * over to candidate moves it outward: the candidate is on
+		 * the side given by sign, or on the line and farther out.
+		 **/
+		private boolean isOutside( int pivot, int end, int candidate, int sign )
+		{
+			double area = sign * points.cross( pivot, end, candidate );
+			
+			return area > 0 ||
+			       ( 0 == area && points.distanceSq( pivot, candidate ) >
+			                      points.distanceSq( pivot, end ) );
+		}
 		
-		return index;
-	}
-	
-	private int findRightmostPointIndex( List<Point2D> points )
-	{
-		/* Local Variables */
-		int index = 0;
+		private int getPrev( int size, int index )
+		{
+			index+=(size-1);
+			index%= size;
+			return index;
+		}
 		
-		/* Find rightmost point */
-		for ( int i = 1; i < points.size(); i++ )
-			if ( points.get(i).getX() > points.get(index).getX() )
-				index = i;
+		private int getNext( int size, int index )
+		{
+			index++;
+			index%= size;
+			return index;
+		}
 		
-		return index;
+		private int findLeftmostPointIndex( int start, int size )
+		{
+			/* Local Variables */
+			int index = 0;
+			
+			/* Find leftmost point */
+			for ( int i = 1; i < size; i++ )
+				if ( points.compare( hull[start + i],
+				                     hull[start + index] ) < 0 )
+					index = i;
+			
+			return index;
+		}
+		
+		private int findRightmostPointIndex( int start, int size )
+		{
+			/* Local Variables */
+			int index = 0;
+			
+			/* Find rightmost point */
+			for ( int i = 1; i < size; i++ )
+				if ( points.compare( hull[start + i],
+				                     hull[start + index] ) > 0 )
+					index = i;
+			
+			return index;
+		}
 	}
 }
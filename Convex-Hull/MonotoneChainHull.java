@@ -0,0 +1,67 @@
+import java.util.Arrays;
+
+/**
+ * Andrew's monotone chain: sorts the points by x, then walks
+ * them left to right for the lower hull and back for the upper,
+ * dropping every point that does not make a left turn.
+ * O(n log n), even when every point is on the hull.
+ **/
+public class MonotoneChainHull implements ConvexHullFinder
+{
+	public int[] computeHull( double[] xs, double[] ys )
+	{
+		/* Local Variables */
+		HullPoints points = new HullPoints( xs, ys );
+		
+		/* Sort the points and throw out the duplicates */
+		int[] sorted = points.sortedIndices();
+		int[] hull = new int[sorted.length + 1];
+		
+		/* Compute the convex hull */
+		int size = chain( points, sorted, 0, sorted.length, hull, 0 );
+		return Arrays.copyOf( hull, size );
+	}
+	
+	/**
+	 * Writes the hull of the sorted, distinct points in
+	 * sorted[lo, hi) to hull from at on, counterclockwise from the
+	 * first of them, and returns its size. The lower hull runs
+	 * from the first point to the last, the upper hull back. Room
+	 * for one more point than there are in the range is needed.
+	 **/
+	static int chain( HullPoints points, int[] sorted, int lo, int hi,
+	                  int[] hull, int at )
+	{
+		/* Local Variables */
+		int k = at;
+		
+		/* Base Case */
+		if ( hi - lo <= 2 )
+		{
+			System.arraycopy( sorted, lo, hull, at, hi - lo );
+			return hi - lo;
+		}
+		
+		/* Lower hull, left to right */
+		for ( int i = lo; i < hi; i++ )
+		{
+			while ( k - at >= 2 &&
+			        points.cross( hull[k-2], hull[k-1], sorted[i] ) <= 0 )
+				k--;
+			hull[k++] = sorted[i];
+		}
+		
+		/* Upper hull, right to left */
+		int lower = k + 1;
+		for ( int i = hi - 2; i >= lo; i-- )
+		{
+			while ( k >= lower &&
+			        points.cross( hull[k-2], hull[k-1], sorted[i] ) <= 0 )
+				k--;
+			hull[k++] = sorted[i];
+		}
+		
+		/* The last point added is the first again */
+		return k - 1 - at;
+	}
+}
@@ -0,0 +1,396 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * QuickHull on a fork/join pool.
+ * <p>
+ * The two sides of AB, and below them the two sides of every
+ * triangle, are independent, so each is a RecursiveTask; ranges
+ * of fewer than CUTOFF candidates are left to the serial
+ * QuickHull. Near the top the ranges are large, so there the
+ * scans for the farthest point and the partitions around it are
+ * split into chunks across the pool as well. A parallel split
+ * sorts each chunk's candidates into the two outside sets and
+ * the rest, then gathers only the two outside sets through a
+ * scratch array, so the points dropped, usually most of them,
+ * are never copied. The hull found is QuickHull's.
+ **/
+public class ParallelQuickHull implements ConvexHullFinder
+{
+	/* Ranges smaller than this are hulled serially */
+	private static final int CUTOFF = 1 << 13;
+	
+	/* Ranges at least this big are scanned and partitioned in parallel */
+	private static final int PARALLEL_SCAN = 1 << 17;
+	
+	/* The candidates per chunk of a parallel scan */
+	private static final int CHUNK = 1 << 14;
+	
+	private final ForkJoinPool pool;
+	
+	public ParallelQuickHull()
+	{
+		this( ForkJoinPool.commonPool() );
+	}
+	
+	public ParallelQuickHull( ForkJoinPool pool )
+	{
+		this.pool = pool;
+	}
+	
+	public int[] computeHull( double[] xs, double[] ys )
+	{
+		/* Local Variables */
+		HullPoints points = new HullPoints( xs, ys );
+		
+		if ( points.size() < CUTOFF )
+			return new QuickHull().computeHull( xs, ys );
+		return pool.invoke( new Run( points ).new TopTask() );
+	}
+	
+	/**
+	 * The state of one computeHull, shared by all of its tasks.
+	 * Tasks only touch their own ranges of candidates and of the
+	 * scratch array.
+	 **/
+	private static class Run
+	{
+		final HullPoints points;
+		final int[] candidates;
+		final int[] scratch;
+		
+		Run( HullPoints points )
+		{
+			this.points     = points;
+			this.candidates = new int[points.size()];
+			this.scratch    = new int[points.size()];
+		}
+		
+		/**
+		 * Finds the ends of AB and hulls both sides of it at once.
+		 **/
+		class TopTask extends RecursiveTask<int[]>
+		{
+			private static final long serialVersionUID = 1L;
+			
+			protected int[] compute()
+			{
+				new ChunkAction( 0, candidates.length, ( chunk, from, to ) -> {
+					for ( int i = from; i < to; i++ )
+						candidates[i] = i;
+				} ).invoke();
+				
+				int a = best( 0, candidates.length,
+				              ( i, j ) -> points.compare( candidates[i],
+				                                          candidates[j] ) < 0 );
+				int b = best( 0, candidates.length,
+				              ( i, j ) -> points.compare( candidates[i],
+				                                          candidates[j] ) > 0 );
+				if ( a == b )
+					return new int[] { a };
+				
+				/* Split the points on either side of AB */
+				int[] ends = split( a, b, b, a, 0, candidates.length, 0 );
+				int m1 = ends[0];
+				int m2 = ends[1];
+				
+				HullTask lower = new HullTask( a, b, 0, m1 );
+				HullTask upper = new HullTask( b, a, m1, m2 );
+				upper.fork();
+				int h1 = lower.compute();
+				int h2 = upper.join();
+				
+				/* Combine Lists */
+				int[] hull = new int[h1 + h2 + 2];
+				hull[0] = a;
+				System.arraycopy( candidates, 0, hull, 1, h1 );
+				hull[h1 + 1] = b;
+				System.arraycopy( candidates, m1, hull, h1 + 2, h2 );
+				return hull;
+			}
+		}
+		
+		/**
+		 * QuickHull.recursiveQuickHull, with the two sides of the
+		 * triangle hulled at once.
+		 **/
+		class HullTask extends RecursiveTask<Integer>
+		{
+			private static final long serialVersionUID = 1L;
+			
+			final int a;
+			final int b;
+			final int lo;
+			final int hi;
+			
+			HullTask( int a, int b, int lo, int hi )
+			{
+				this.a  = a;
+				this.b  = b;
+				this.lo = lo;
+				this.hi = hi;
+			}
+			
+			protected Integer compute()
+			{
+				/* Base Case */
+				if ( hi - lo < CUTOFF )
+					return QuickHull.recursiveQuickHull( points, a, b,
+					                                     candidates, lo, hi );
+				
+				/* Recursive Case */
+				int far = best( lo, hi, new Farthest( a, b ) );
+				int c = candidates[far];
+				
+				/* Park c at the end, split the rest, then put c between */
+				QuickHull.swap( candidates, far, hi - 1 );
+				int[] ends = split( a, c, c, b, lo, hi - 1, 1 );
+				int m1 = ends[0];
+				int m2 = ends[1];
+				candidates[m1] = c;
+				
+				HullTask left  = new HullTask( a, c, lo, m1 );
+				HullTask right = new HullTask( c, b, m1 + 1, m2 );
+				right.fork();
+				int h1 = left.compute();
+				int h2 = right.join();
+				
+				candidates[lo + h1] = c;
+				System.arraycopy( candidates, m1 + 1, candidates,
+				                  lo + h1 + 1, h2 );
+				return h1 + 1 + h2;
+			}
+		}
+		
+		/**
+		 * Orders candidates by distance from the line through a and
+		 * b, as QuickHull.getFarthestPoint does, and scans chunks
+		 * with it.
+		 **/
+		class Farthest implements Order
+		{
+			final int a;
+			final int b;
+			
+			Farthest( int a, int b )
+			{
+				this.a = a;
+				this.b = b;
+			}
+			
+			public boolean isBetter( int i, int j )
+			{
+				double iArea = -points.cross( a, b, candidates[i] );
+				double jArea = -points.cross( a, b, candidates[j] );
+				
+				return iArea > jArea ||
+				       ( iArea == jArea &&
+				         points.dot( a, b, candidates[i] ) >
+				         points.dot( a, b, candidates[j] ) );
+			}
+			
+			public int scan( int lo, int hi )
+			{
+				return QuickHull.getFarthestPoint( points, a, b, candidates,
+				                                   lo, hi );
+			}
+		}
+		
+		/**
+		 * Returns the position in [lo, hi) that no other beats,
+		 * the first of any ties, scanning in parallel if the range
+		 * is large.
+		 **/
+		int best( int lo, int hi, Order order )
+		{
+			if ( hi - lo < PARALLEL_SCAN )
+				return order.scan( lo, hi );
+			return new BestTask( lo, hi, order ).invoke();
+		}
+		
+		/**
+		 * Splits the candidates in [lo, hi) into those outside the
+		 * line from a1 to b1 and those outside the line from a2 to
+		 * b2, which must not overlap, and drops the rest. The first
+		 * set is moved to the front of the range, then gap (0 or 1)
+		 * positions are left, then the second set follows; with a
+		 * gap, position hi must be free to use. Returns where the
+		 * two sets end.
+		 **/
+		int[] split( int a1, int b1, int a2, int b2, int lo, int hi,
+		             int gap )
+		{
+			if ( hi - lo < PARALLEL_SCAN )
+			{
+				int m1 = QuickHull.getOutsidePoints( points, a1, b1,
+				                                     candidates, lo, hi );
+				int m2 = QuickHull.getOutsidePoints( points, a2, b2,
+				                                     candidates, m1, hi );
+				
+				/* Open the gap by moving the second set's first to its end */
+				if ( 1 == gap )
+					QuickHull.swap( candidates, m1, m2 );
+				return new int[] { m1, m2 + gap };
+			}
+			
+			/* Local Variables */
+			int chunks = ( hi - lo - 1 ) / CHUNK + 1;
+			int[] first    = new int[chunks];
+			int[] second   = new int[chunks];
+			int[] firstAt  = new int[chunks];
+			int[] secondAt = new int[chunks];
+			int m1 = lo;
+			int m2;
+			
+			/* Sort each chunk into the two sets and the rest, in place */
+			new ChunkAction( lo, hi, ( chunk, from, to ) -> {
+				int e1 = QuickHull.getOutsidePoints( points, a1, b1,
+				                                     candidates, from, to );
+				int e2 = QuickHull.getOutsidePoints( points, a2, b2,
+				                                     candidates, e1, to );
+				first[chunk]  = e1 - from;
+				second[chunk] = e2 - e1;
+			} ).invoke();
+			
+			/* Find where each chunk's sets go */
+			for ( int chunk = 0; chunk < chunks; chunk++ )
+			{
+				firstAt[chunk] = m1;
+				m1 += first[chunk];
+			}
+			m2 = m1 + gap;
+			for ( int chunk = 0; chunk < chunks; chunk++ )
+			{
+				secondAt[chunk] = m2;
+				m2 += second[chunk];
+			}
+			
+			/* Gather them in the scratch array, then copy back */
+			new ChunkAction( lo, hi, ( chunk, from, to ) -> {
+				System.arraycopy( candidates, from, scratch, firstAt[chunk],
+				                  first[chunk] );
+				System.arraycopy( candidates, from + first[chunk], scratch,
+				                  secondAt[chunk], second[chunk] );
+			} ).invoke();
+			if ( lo < m2 )
+				new ChunkAction( lo, m2, ( chunk, from, to ) ->
+					System.arraycopy( scratch, from, candidates, from,
+					                  to - from )
+				).invoke();
+			
+			return new int[] { m1, m2 };
+		}
+		
+		/**
+		 * Runs a body over every chunk of [lo, hi), splitting the
+		 * chunks in half across the pool.
+		 **/
+		class ChunkAction extends RecursiveAction
+		{
+			private static final long serialVersionUID = 1L;
+			
+			final int lo;
+			final int hi;
+			final int first;
+			final int last;
+			final ChunkBody body;
+			
+			ChunkAction( int lo, int hi, ChunkBody body )
+			{
+				this( lo, hi, 0, ( hi - lo - 1 ) / CHUNK + 1, body );
+			}
+			
+			private ChunkAction( int lo, int hi, int first, int last,
+			                     ChunkBody body )
+			{
+				this.lo    = lo;
+				this.hi    = hi;
+				this.first = first;
+				this.last  = last;
+				this.body  = body;
+			}
+			
+			protected void compute()
+			{
+				if ( 1 == last - first )
+				{
+					int from = lo + first * CHUNK;
+					body.run( first, from, Math.min( hi, from + CHUNK ) );
+					return;
+				}
+				
+				int mid = ( first + last ) >>> 1;
+				invokeAll( new ChunkAction( lo, hi, first, mid, body ),
+				           new ChunkAction( lo, hi, mid, last, body ) );
+			}
+		}
+		
+		/**
+		 * Finds the position in [lo, hi) that no other beats,
+		 * splitting the range in half down to CHUNK positions.
+		 **/
+		class BestTask extends RecursiveTask<Integer>
+		{
+			private static final long serialVersionUID = 1L;
+			
+			final int lo;
+			final int hi;
+			final Order order;
+			
+			BestTask( int lo, int hi, Order order )
+			{
+				this.lo    = lo;
+				this.hi    = hi;
+				this.order = order;
+			}
+			
+			protected Integer compute()
+			{
+				if ( hi - lo <= CHUNK )
+					return order.scan( lo, hi );
+				
+				int mid = ( lo + hi ) >>> 1;
+				BestTask right = new BestTask( mid, hi, order );
+				right.fork();
+				int left  = new BestTask( lo, mid, order ).compute();
+				int other = right.join();
+				return order.isBetter( other, left ) ? other : left;
+			}
+		}
+	}
+	
+	/**
+	 * Work done on one chunk of a range.
+	 **/
+	private interface ChunkBody
+	{
+		void run( int chunk, int from, int to );
+	}
+	
+	/**
+	 * An order on candidates by position, for finding the best.
+	 **/
+	private interface Order
+	{
+		/**
+		 * Returns whether the candidate at position i beats the
+		 * one at j.
+		 **/
+		boolean isBetter( int i, int j );
+		
+		/**
+		 * Returns the position in [lo, hi) that no other beats,
+		 * the first of any ties.
+		 **/
+		default int scan( int lo, int hi )
+		{
+			int best = lo;
+			
+			for ( int i = lo + 1; i < hi; i++ )
+				if ( isBetter( i, best ) )
+					best = i;
+			return best;
+		}
+	}
+}
@@ -1,97 +1,147 @@
-import java.util.List;
-import java.util.ArrayList;
-import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
-
 public class QuickHull implements ConvexHullFinder
 {
-	public List<Point2D> computeHull( List<Point2D> points )
+	public int[] computeHull( double[] xs, double[] ys )
 	{
 		/* Local Variables */
-		Point2D a = findLeftmostPoint( points );
-		Point2D b = findRightmostPoint( points );
+		HullPoints points = new HullPoints( xs, ys );
+		int[] candidates = new int[points.size()];
 		
-		List<Point2D> h1 = recursiveQuickHull( new Line2D.Double( a, b ),
-		                                       points );
-		List<Point2D> h2 = recursiveQuickHull( new Line2D.Double( b, a ),
-		                                       points );
+		if ( 0 == points.size() )
+			return new int[0];
+		
+		for ( int i = 0; i < candidates.length; i++ )
+			candidates[i] = i;
+		
+		int a = findLeftmostPoint( points );
+		int b = findRightmostPoint( points );
+		if ( a == b )
+			return new int[] { a };
+		
+		/* Split the points on either side of AB */
+		int m1 = getOutsidePoints( points, a, b, candidates, 0,
+		                           candidates.length );
+		int m2 = getOutsidePoints( points, b, a, candidates, m1,
+		                           candidates.length );
+		
+		int h1 = recursiveQuickHull( points, a, b, candidates, 0, m1 );
+		int h2 = recursiveQuickHull( points, b, a, candidates, m1, m2 );
 		
 		/* Combine Lists */
-		h2.remove(0);
-		h1.addAll(h2);
-		h1.remove( h1.size()-1 );
-		return h1;
+		int[] hull = new int[h1 + h2 + 2];
+		hull[0] = a;
+		System.arraycopy( candidates, 0, hull, 1, h1 );
+		hull[h1 + 1] = b;
+		System.arraycopy( candidates, m1, hull, h1 + 2, h2 );
+		return hull;
 	}
 	
-	private List<Point2D> recursiveQuickHull( Line2D lineAB, List<Point2D> pointsAB )
+	/**
+	 * Finds the hull vertices strictly between a and b among the
+	 * candidates in [lo, hi), all of which lie outside AB, and
+	 * writes them in order to the front of that range. Returns
+	 * how many there are.
+	 **/
+	static int recursiveQuickHull( HullPoints points, int a, int b,
+	                               int[] candidates, int lo, int hi )
 	{
 		/* Base Case */
-		List<Point2D> outerPoints = getOutsidePoints( lineAB, pointsAB );
-		if ( 0 == outerPoints.size() )
-		{
-			ArrayList<Point2D> hull = new ArrayList();
-			hull.add( lineAB.getP1() );
-			hull.add( lineAB.getP2() );
-			return hull;
-		}
+		if ( lo == hi )
+			return 0;
 		
 		/* Recursive Case */
-		Point2D c = getFarthestPoint( lineAB, outerPoints );
-		List<Point2D> h1 = recursiveQuickHull( new Line2D.Double( lineAB.getP1(), c), outerPoints );
-		List<Point2D> h2 = recursiveQuickHull( new Line2D.Double( c, lineAB.getP2() ), outerPoints );
-
-		h2.remove(0);
-		h1.addAll(h2);
-		return h1;
+		int far = getFarthestPoint( points, a, b, candidates, lo, hi );
+		int c = candidates[far];
+		
+		/* Park c at the end, split the rest, then put c between */
+		swap( candidates, far, hi - 1 );
+		int m1 = getOutsidePoints( points, a, c, candidates, lo, hi - 1 );
+		swap( candidates, m1, hi - 1 );
+		int m2 = getOutsidePoints( points, c, b, candidates, m1 + 1, hi );
+		
+		int h1 = recursiveQuickHull( points, a, c, candidates, lo, m1 );
+		int h2 = recursiveQuickHull( points, c, b, candidates, m1 + 1, m2 );
+		
+		candidates[lo + h1] = c;
+		System.arraycopy( candidates, m1 + 1, candidates, lo + h1 + 1, h2 );
+		return h1 + 1 + h2;
 	}
 	
-	private List<Point2D> getOutsidePoints( Line2D line, List<Point2D> points )
+	/**
+	 * Moves the candidates in [lo, hi) lying outside (to the right
+	 * of) the line from a to b to the front of that range, and
+	 * returns where they end.
+	 **/
+	static int getOutsidePoints( HullPoints points, int a, int b,
+	                             int[] candidates, int lo, int hi )
 	{
 		/* Local Variables */
-		ArrayList<Point2D> outerPoints = new ArrayList();
+		int end = lo;
 		
-		/* Generate List */
-		for ( Point2D point : points )
-			if ( line.relativeCCW( point ) > 0 )
-				outerPoints.add( point );
-		return outerPoints;
+		for ( int i = lo; i < hi; i++ )
+			if ( points.cross( a, b, candidates[i] ) < 0 )
+				swap( candidates, i, end++ );
+		return end;
 	}
 	
-	private Point2D getFarthestPoint( Line2D line, List<Point2D> points )
+	/**
+	 * Returns the position in [lo, hi) of the candidate farthest
+	 * from the line through a and b. Of several equally far, the
+	 * one farthest along AB is taken, since only the two ends of
+	 * such a run are hull vertices.
+	 **/
+	static int getFarthestPoint( HullPoints points, int a, int b,
+	                             int[] candidates, int lo, int hi )
 	{
 		/* Local Variables */
-		Point2D farthestPoint = points.get(0);
+		int farthest = lo;
+		double farthestArea = -points.cross( a, b, candidates[lo] );
 		
 		/* Find Farthest Point */
-		for ( Point2D point : points )
-			if ( line.ptLineDist( point ) > line.ptLineDist( farthestPoint ) )
-				farthestPoint = point;
-		return farthestPoint;
+		for ( int i = lo + 1; i < hi; i++ )
+		{
+			double area = -points.cross( a, b, candidates[i] );
+			if ( area > farthestArea ||
+			     ( area == farthestArea &&
+			       points.dot( a, b, candidates[i] ) >
+			       points.dot( a, b, candidates[farthest] ) ) )
+			{
+				farthest = i;
+				farthestArea = area;
+			}
+		}
+		return farthest;
 	}
 	
-	private Point2D findLeftmostPoint( List<Point2D> points )
+	static int findLeftmostPoint( HullPoints points )
 	{
 		/* Local Variables */
-		Point2D leftmostPoint = points.get(0);
+		int leftmostPoint = 0;
 		
 		/* Find leftmost point */
-		for ( Point2D point : points )
-			if ( point.getX() < leftmostPoint.getX() )
-				leftmostPoint = point;
+		for ( int i = 1; i < points.size(); i++ )
+			if ( points.compare( i, leftmostPoint ) < 0 )
+				leftmostPoint = i;
 		
 		return leftmostPoint;
 	}
 	
-	private Point2D findRightmostPoint( List<Point2D> points )
+	static int findRightmostPoint( HullPoints points )
 	{
 		/* Local Variables */
-		Point2D rightmostPoint = points.get(0);
+		int rightmostPoint = 0;
 		
 		/* Find rightmost point */
-		for ( Point2D point : points )
-			if ( point.getX() > rightmostPoint.getX() )
-				rightmostPoint = point;
+		for ( int i = 1; i < points.size(); i++ )
+			if ( points.compare( i, rightmostPoint ) > 0 )
+				rightmostPoint = i;
 		
 		return rightmostPoint;
 	}
+	
+	static void swap( int[] array, int i, int j )
+	{
+		int t = array[i];
+		array[i] = array[j];
+		array[j] = t;
+	}
 }
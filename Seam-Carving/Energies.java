@@ -0,0 +1,141 @@
+import java.util.Locale;
+
+/**
+ * Class to look up energy functions by name.
+ * <p>
+ * When the jdk.incubator.vector module is present at startup
+ * (and VectorEnergy was compiled), lookups return the
+ * vectorized implementations; otherwise they return the
+ * scalar ones. Both give identical energy maps.
+ **/
+
+public final class Energies
+{
+    /* Class Constants */
+    /**
+     * The name of the energy function used unless told otherwise.
+     **/
+    public static final String DEFAULT = "gradient";
+    /**
+     * The vectorized functions, or null if they cannot be used.
+     **/
+    private static final EnergyFunction[] VECTOR = loadVector();
+    
+    /*== Constructors ==*/
+    
+    private Energies()
+    {}
+    
+    /*== Accessors ==*/
+    
+    /**
+     * Returns the names of the energy functions.
+     **/
+    public static String[] getNames()
+    {
+        /* Local Variables */
+        ScalarEnergy[] all  = ScalarEnergy.values();
+        String[]       names = new String[all.length];
+        
+        for ( int i = 0; i < all.length; i++ )
+            names[i] = getName( all[i] );
+        return names;
+    }
+    
+    /**
+     * Returns the name of an energy function, as accepted by get().
+     **/
+    public static String getName( final EnergyFunction FUNCTION )
+    {
+        return ( (Enum<?>)FUNCTION ).name().toLowerCase( Locale.ROOT )
+                                    .replace( '_', '-' );
+    }
+    
+    /**
+     * Returns whether get() hands out vectorized functions.
+     **/
+    public static boolean isVectorized()
+    {
+        return null != VECTOR;
+    }
+    
+    /**
+     * Returns the fastest available implementation of an energy
+     * function.
+     * 
+     * @param NAME
+     *      the function's name, e.g. "dual-gradient".
+     * @return
+     *      the function.
+     * @throws IllegalArgumentException
+     *      if there is no function by that name.
+     **/
+    public static EnergyFunction get( final String NAME )
+    {
+        /* Local Constants */
+        final ScalarEnergy SCALAR = getScalar( NAME );
+        
+        return null == VECTOR ? SCALAR : VECTOR[SCALAR.ordinal()];
+    }
+    
+    /**
+     * Returns the scalar implementation of an energy function.
+     * 
+     * @param NAME
+     *      the function's name.
+     * @return
+     *      the function.
+     * @throws IllegalArgumentException
+     *      if there is no function by that name.
+     **/
+    public static ScalarEnergy getScalar( final String NAME )
+    {
+        return ScalarEnergy.valueOf( NAME.toUpperCase( Locale.ROOT )
+                                         .replace( '-', '_' ) );
+    }
+    
+    /**
+     * Returns the vectorized implementation of an energy function.
+     * 
+     * @param NAME
+     *      the function's name.
+     * @return
+     *      the function, or null if the Vector API is unavailable.
+     **/
+    public static EnergyFunction getVector( final String NAME )
+    {
+        return null == VECTOR ? null : VECTOR[getScalar( NAME ).ordinal()];
+    }
+    
+    /**
+     * Loads VectorEnergy if it and the module it needs are both
+     * there, checking that it lines up with ScalarEnergy.
+     **/
+    private static EnergyFunction[] loadVector()
+    {
+        try
+        {
+            /* Local Constants */
+            final Object[]       ALL    =
+                Class.forName( "VectorEnergy" ).getEnumConstants();
+            final ScalarEnergy[] SCALAR = ScalarEnergy.values();
+            
+            /* Local Variables */
+            EnergyFunction[] vector = new EnergyFunction[SCALAR.length];
+            
+            if ( ALL.length != SCALAR.length )
+                return null;
+            for ( int i = 0; i < ALL.length; i++ )
+            {
+                vector[i] = (EnergyFunction)ALL[i];
+                if ( !getName( vector[i] ).equals( getName( SCALAR[i] ) ) )
+                    return null;
+            }
+            return vector;
+        }
+        catch ( ClassNotFoundException | LinkageError e )
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Class to measure how fast every energy function fills an
+ * energy map, and how fast the path weight pass runs over it,
+ * scalar and vectorized, for both seam directions.
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class EnergyBenchmark
+{
+	public static void main( String... args )
+	{
+		/* Local Variables */
+		int width     = 0 < args.length ? Integer.parseInt( args[0] ) : 1920;
+		int height    = 1 < args.length ? Integer.parseInt( args[1] ) : 1080;
+		double seconds = 2 < args.length ? Double.parseDouble( args[2] ) : 1.0;
+		long runNanos = (long)( seconds * 1e9 );
+		UWECImage im  = synthetic( width, height );
+		
+		System.out.println( width + "x" + height + ", Vector API " +
+		                    ( Energies.isVectorized() ? "available" :
+		                                                "not available" ) );
+		System.out.printf( "%-14s %-10s %-7s %12s%n", "energy", "direction",
+		                   "impl", "Mpixels/s" );
+		
+		for ( String name : Energies.getNames() )
+			for ( boolean horizontal : new boolean[] { false, true } )
+			{
+				SeamMaps scalar = time( name, "scalar",
+				                        Energies.getScalar( name ), im,
+				                        horizontal, runNanos );
+				EnergyFunction vector = Energies.getVector( name );
+				if ( null == vector )
+					continue;
+				
+				SeamMaps vectorMaps = time( name, "vector", vector, im,
+				                            horizontal, runNanos );
+				if ( !Arrays.equals( scalar.ENERGY, vectorMaps.ENERGY ) ||
+				     !Arrays.equals( scalar.stepLeft, vectorMaps.stepLeft ) ||
+				     !Arrays.equals( scalar.stepRight, vectorMaps.stepRight ) )
+					System.out.println( "    vector map differs from scalar!" );
+			}
+		
+		for ( boolean horizontal : new boolean[] { false, true } )
+		{
+			SeamMaps scalar = time( Seam.SCALAR_KERNEL, "scalar", im,
+			                        horizontal, runNanos );
+			if ( Seam.KERNEL == Seam.SCALAR_KERNEL )
+				continue;
+			
+			SeamMaps vector = time( Seam.KERNEL, "vector", im, horizontal,
+			                        runNanos );
+			if ( !Arrays.equals( scalar.PATH_WEIGHTS, vector.PATH_WEIGHTS ) ||
+			     !Arrays.equals( scalar.DIRS, vector.DIRS ) )
+				System.out.println( "    vector maps differ from scalar!" );
+		}
+	}
+	
+	/**
+	 * Returns a smooth image with noise over it, the same for
+	 * the same size every time.
+	 **/
+	static UWECImage synthetic( int width, int height )
+	{
+		UWECImage im  = new UWECImage( width, height );
+		Random random = new Random( 335 );
+		
+		for ( int y = 0; y < height; y++ )
+			for ( int x = 0; x < width; x++ )
+				im.setRGB( x, y,
+				           (int)( 127 + 100 * Math.sin( x / 37.0 ) ) +
+				               random.nextInt( 20 ),
+				           (int)( 127 + 100 * Math.cos( y / 23.0 ) ) +
+				               random.nextInt( 20 ),
+				           ( x ^ y ) & 255 );
+		return im;
+	}
+	
+	/**
+	 * Fills an energy map over and over for about a given time,
+	 * prints the throughput, and returns the maps.
+	 **/
+	private static SeamMaps time( String name, String impl,
+	                              EnergyFunction energy, UWECImage im,
+	                              boolean horizontal, long runNanos )
+	{
+		int span   = horizontal ? im.getHeight() : im.getWidth();
+		int length = horizontal ? im.getWidth()  : im.getHeight();
+		int across = horizontal ? im.getStride() : 1;
+		int along  = horizontal ? 1 : im.getStride();
+		SeamMaps maps = new SeamMaps( span, length, true );
+		long runs  = 0;
+		long start;
+		long elapsed;
+		
+		/* Warm Up */
+		for ( int i = 0; i < 5; i++ )
+			Seam.energyRows( energy, im.getPixels(), across, along, maps,
+			                 0, length );
+		
+		start = System.nanoTime();
+		do
+		{
+			Seam.energyRows( energy, im.getPixels(), across, along, maps,
+			                 0, length );
+			runs++;
+			elapsed = System.nanoTime() - start;
+		}
+		while ( elapsed < runNanos );
+		
+		System.out.printf( "%-14s %-10s %-7s %12.1f%n", name,
+		                   horizontal ? "horizontal" : "vertical", impl,
+		                   runs * span * (double)length * 1000.0 / elapsed );
+		return maps;
+	}
+	
+	/**
+	 * Runs the path weight pass over and over for about a given
+	 * time, prints the throughput, and returns the maps.
+	 **/
+	private static SeamMaps time( PathWeightKernel kernel, String impl,
+	                              UWECImage im, boolean horizontal,
+	                              long runNanos )
+	{
+		int span   = horizontal ? im.getHeight() : im.getWidth();
+		int length = horizontal ? im.getWidth()  : im.getHeight();
+		SeamMaps maps = new SeamMaps( span, length, false );
+		long runs  = 0;
+		long start;
+		long elapsed;
+		
+		Seam.energyRows( Energies.getScalar( Energies.DEFAULT ),
+		                 im.getPixels(), horizontal ? im.getStride() : 1,
+		                 horizontal ? 1 : im.getStride(), maps, 0, length );
+		System.arraycopy( maps.ENERGY, 0, maps.PATH_WEIGHTS, 0, span );
+		
+		/* Warm Up */
+		for ( int i = 0; i < 5; i++ )
+			pathWeights( kernel, maps );
+		
+		start = System.nanoTime();
+		do
+		{
+			pathWeights( kernel, maps );
+			runs++;
+			elapsed = System.nanoTime() - start;
+		}
+		while ( elapsed < runNanos );
+		
+		System.out.printf( "%-14s %-10s %-7s %12.1f%n", "path weights",
+		                   horizontal ? "horizontal" : "vertical", impl,
+		                   runs * span * (double)length * 1000.0 / elapsed );
+		return maps;
+	}
+	
+	/**
+	 * Fills every row of path weights but the first, serially.
+	 **/
+	private static void pathWeights( PathWeightKernel kernel, SeamMaps maps )
+	{
+		for ( int j = 1; j < maps.LENGTH; j++ )
+			Seam.pathWeightRow( kernel, maps, j, maps.weightRow( j-1 ),
+			                    maps.weightRow( j ), 0, maps.span );
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Interface for the measures of pixel importance that seams
+ * are carved by.
+ * <p>
+ * Energy is computed a row at a time, where a row runs across
+ * the seam direction: pixel (i, j) of the map is
+ * PIXELS[i * ACROSS + j * ALONG]. Neighbors wrap around at the
+ * edges of the image.
+ * <p>
+ * A function may also charge a seam for the step it takes into
+ * a pixel, as forward energy does: see chargesSteps.
+ **/
+
+public interface EnergyFunction
+{
+    /**
+     * Fills pixels [FROM, TO) of row J of an energy map.
+     * 
+     * @param PIXELS
+     *      the packed image pixels.
+     * @param ACROSS
+     *      the pixel step between neighbors across a seam.
+     * @param ALONG
+     *      the pixel step between neighbors along a seam.
+     * @param maps
+     *      the maps whose energy is filled; its span and length
+     *      give the size of the image.
+     * @param J
+     *      the row.
+     * @param FROM
+     *      the first pixel to fill.
+     * @param TO
+     *      one past the last pixel to fill.
+     **/
+    void energyRow( int[]    PIXELS,
+                    int      ACROSS,
+                    int      ALONG,
+                    SeamMaps maps,
+                    int      J,
+                    int      FROM,
+                    int      TO );
+    
+    /**
+     * Returns how many rows either side of a pixel its energy
+     * depends on.
+     * 
+     * @return
+     *      0 if a pixel's energy depends only on its own row,
+     *      otherwise 1.
+     **/
+    int getDepth();
+    
+    /**
+     * Returns whether this function charges a seam for the step
+     * it takes into a pixel as well as for the pixel. If so,
+     * energyRow also fills the maps' stepLeft and stepRight
+     * over the same pixels, making room for them first with
+     * SeamMaps.chargeSteps. A seam stepping into a pixel from the
+     * row above costs its energy (the cost of a straight step)
+     * plus its stepLeft if it came from the pixel above and to
+     * the left, or its stepRight if from above and to the right.
+     * 
+     * @return
+     *      whether energyRow fills step costs.
+     **/
+    default boolean chargesSteps()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class to compute a stripe of an energy map, splitting it
+ * in half across a fork/join pool until each stripe falls
+ * below a given size.
+ **/
+
+class EnergyTask extends RecursiveAction
+{
+    /* Class Constants */
+    private static final long serialVersionUID = 1L;
+    
+    /* Instance Constants */
+    private final EnergyFunction FUNCTION;
+    private final int[]          PIXELS;
+    private final int            ACROSS;
+    private final int            ALONG;
+    private final SeamMaps       MAPS;
+    private final int[]          LAST_SEAM;
+    private final int            FROM;
+    private final int            TO;
+    private final int            CUTOFF;
+    
+    /*== Constructors ==*/
+    
+    /**
+     * Constructs an EnergyTask for rows [FROM, TO) of a map.
+     * 
+     * @param FUNCTION
+     *      the energy function.
+     * @param PIXELS
+     *      the packed image pixels.
+     * @param ACROSS
+     *      the pixel step between neighbors across a seam.
+     * @param ALONG
+     *      the pixel step between neighbors along a seam.
+     * @param MAPS
+     *      the maps whose energy is filled.
+     * @param LAST_SEAM
+     *      the last seam removed, or null to compute every pixel.
+     * @param FROM
+     *      the first row to fill.
+     * @param TO
+     *      one past the last row to fill.
+     * @param CUTOFF
+     *      the number of pixels below which a stripe is not split.
+     **/
+    EnergyTask( final EnergyFunction FUNCTION,
+                final int[]          PIXELS,
+                final int            ACROSS,
+                final int            ALONG,
+                final SeamMaps       MAPS,
+                final int[]          LAST_SEAM,
+                final int            FROM,
+                final int            TO,
+                final int            CUTOFF )
+    {
+        this.FUNCTION  = FUNCTION;
+        this.PIXELS    = PIXELS;
+        this.ACROSS    = ACROSS;
+        this.ALONG     = ALONG;
+        this.MAPS      = MAPS;
+        this.LAST_SEAM = LAST_SEAM;
+        this.FROM      = FROM;
+        this.TO        = TO;
+        this.CUTOFF    = CUTOFF;
+    }
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Fills this task's stripe, forking halves while it is
+     * larger than the cutoff.
+     **/
+    @Override
+    protected void compute()
+    {
+        /* Base Case */
+        if ( 1 == TO - FROM || (long)( TO - FROM ) * MAPS.span <= CUTOFF )
+        {
+            if ( null == LAST_SEAM )
+                Seam.energyRows( FUNCTION, PIXELS, ACROSS, ALONG, MAPS,
+                                 FROM, TO );
+            else
+                Seam.energyRows( FUNCTION, PIXELS, ACROSS, ALONG, MAPS,
+                                 LAST_SEAM, FROM, TO );
+            return;
+        }
+        
+        /* Recursive Case */
+        final int MID = ( FROM + TO ) >>> 1;
+        invokeAll( split( FROM, MID ), split( MID, TO ) );
+    }
+    
+    /**
+     * Creates a task for part of this task's stripe.
+     **/
+    private EnergyTask split( final int FROM, final int TO )
+    {
+        return new EnergyTask( FUNCTION, PIXELS, ACROSS, ALONG, MAPS,
+                               LAST_SEAM, FROM, TO, CUTOFF );
+    }
+}
@@ -0,0 +1,239 @@
+import javax.imageio.ImageIO;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+
+/**
+ * Class to take images from files, through carving, to files,
+ * for the drivers that resize many images without a display.
+ * <p>
+ * Decoding, carving and encoding each run on a pool of their
+ * own, so the next images are being read and the last written
+ * while others are carved; a cap on the images in flight keeps
+ * memory bounded. Files named *.rawi are read and written as raw
+ * packed pixels, everything else through ImageIO.
+ **/
+
+final class ImagePipeline
+{
+    /**
+     * One image to take through the pipeline and what happened
+     * to it.
+     **/
+    static class Item
+    {
+        /* Instance Constants */
+        final File INPUT;
+        final File OUTPUT;
+        
+        /* Instance Variables */
+        long   decodeNs;
+        long   encodeNs;
+        /**
+         * What went wrong, or null if the image was written.
+         **/
+        String error;
+        
+        /*== Constructors ==*/
+        
+        Item( final File INPUT, final File OUTPUT )
+        {
+            this.INPUT  = INPUT;
+            this.OUTPUT = OUTPUT;
+        }
+    }
+    
+    /*== Constructors ==*/
+    
+    private ImagePipeline()
+    {}
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Decodes, carves and encodes every item, waiting until all
+     * are done. An item that fails has its error set and does
+     * not stop the others.
+     * 
+     * @param ITEMS
+     *      the items, started in order.
+     * @param IO_THREADS
+     *      the number of threads decoding, and as many encoding.
+     * @param CARVE_THREADS
+     *      the number of threads carving; 1 carves the items one
+     *      at a time in order.
+     * @param IN_FLIGHT
+     *      the most items decoded but not yet written.
+     * @param CARVE
+     *      carves an item's decoded image and returns the result.
+     **/
+    static <T extends Item> void run(
+        final List<T>                             ITEMS,
+        final int                                 IO_THREADS,
+        final int                                 CARVE_THREADS,
+        final int                                 IN_FLIGHT,
+        final BiFunction<T, UWECImage, UWECImage> CARVE )
+    {
+        /* Local Constants */
+        final ExecutorService DECODERS =
+            Executors.newFixedThreadPool( IO_THREADS );
+        final ExecutorService CARVERS  =
+            Executors.newFixedThreadPool( CARVE_THREADS );
+        final ExecutorService ENCODERS =
+            Executors.newFixedThreadPool( IO_THREADS );
+        final Semaphore       PERMITS  = new Semaphore( IN_FLIGHT );
+        
+        /* Local Variables */
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        
+        try
+        {
+            for ( T item : ITEMS )
+            {
+                PERMITS.acquireUninterruptibly();
+                done.add( CompletableFuture
+                    .supplyAsync( () -> decode( item ), DECODERS )
+                    .thenApplyAsync( im -> CARVE.apply( item, im ), CARVERS )
+                    .thenAcceptAsync( im -> encode( item, im ), ENCODERS )
+                    .handle( ( ok, e ) -> {
+                        while ( e instanceof CompletionException ||
+                                e instanceof UncheckedIOException )
+                            e = e.getCause();
+                        if ( null != e )
+                            item.error = e.toString();
+                        PERMITS.release();
+                        return null;
+                    } ) );
+            }
+            CompletableFuture.allOf(
+                done.toArray( new CompletableFuture<?>[0] ) ).join();
+        }
+        finally
+        {
+            DECODERS.shutdown();
+            CARVERS.shutdown();
+            ENCODERS.shutdown();
+        }
+    }
+    
+    /*== Accessors ==*/
+    
+    /**
+     * Returns whether a file looks like an image that read() can
+     * decode, going by its extension.
+     **/
+    static boolean canRead( final File FILE )
+    {
+        /* Local Constants */
+        final String NAME   = FILE.getName();
+        final String SUFFIX = NAME.substring( NAME.lastIndexOf( '.' ) + 1 )
+                                  .toLowerCase( Locale.ROOT );
+        
+        return RawImage.isRaw( NAME ) ||
+               Arrays.asList( ImageIO.getReaderFileSuffixes() )
+                     .contains( SUFFIX );
+    }
+    
+    /**
+     * Reads an image file.
+     * 
+     * @param FILE
+     *      the file.
+     * @return
+     *      the image.
+     * @throws IOException
+     *      if it cannot be read or no reader knows its format.
+     **/
+    static UWECImage read( final File FILE ) throws IOException
+    {
+        /* Local Variables */
+        BufferedImage image;
+        
+        if ( RawImage.isRaw( FILE.getName() ) )
+            return RawImage.read( FILE.toPath() );
+        
+        image = ImageIO.read( FILE );
+        if ( null == image )
+            throw new IOException( "no reader for " + FILE );
+        return new UWECImage( image );
+    }
+    
+    /**
+     * Writes an image file in the format its extension names.
+     * 
+     * @param IM
+     *      the image.
+     * @param FILE
+     *      the file.
+     * @throws IOException
+     *      if it cannot be written or no writer knows the format.
+     **/
+    static void write( final UWECImage IM, final File FILE )
+        throws IOException
+    {
+        /* Local Constants */
+        final String NAME   = FILE.getName();
+        final String FORMAT = NAME.substring( NAME.lastIndexOf( '.' ) + 1 );
+        
+        if ( RawImage.isRaw( NAME ) )
+            RawImage.write( IM, FILE.toPath() );
+        else if ( !ImageIO.write( IM.getBufferedImage(), FORMAT, FILE ) )
+            throw new IOException( "no writer for " + FORMAT );
+    }
+    
+    /**
+     * Reads an item's image, timing it.
+     **/
+    private static UWECImage decode( final Item ITEM )
+    {
+        /* Local Constants */
+        final long START = System.nanoTime();
+        
+        try
+        {
+            return read( ITEM.INPUT );
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+        finally
+        {
+            ITEM.decodeNs = System.nanoTime() - START;
+        }
+    }
+    
+    /**
+     * Writes an item's carved image, timing it.
+     **/
+    private static void encode( final Item ITEM, final UWECImage IM )
+    {
+        /* Local Constants */
+        final long START = System.nanoTime();
+        
+        try
+        {
+            write( IM, ITEM.OUTPUT );
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+        finally
+        {
+            ITEM.encodeNs = System.nanoTime() - START;
+        }
+    }
+}
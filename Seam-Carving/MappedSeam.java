@@ -0,0 +1,763 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Class to carve vertical seams out of images too big to hold
+ * on the heap.
+ * <p>
+ * The pixels live in a file of packed 0xRRGGBB ints, row by
+ * row, either bare or after the header of a RawImage, which is
+ * mapped rather than read in; the seam directions go to a
+ * mapped scratch file beside it. Each seam is found in one pass
+ * down the rows that also removes the previous seam from each
+ * row as it goes, so only a few rows are on the heap at once,
+ * plus a log of one step per row for every seam removed.
+ * Energy is always the row gradient, which needs nothing but
+ * the row itself; with it the result is the same as
+ * fastVSShrink.
+ * <p>
+ * Images need not pass through the heap on the way in or out
+ * either: read decodes an image file into the pixel file a band
+ * of rows at a time, and write encodes the carved rows straight
+ * from the mapping.
+ **/
+
+public class MappedSeam implements Closeable
+{
+    /* Class Constants */
+    /**
+     * The most bytes mapped by a single buffer.
+     **/
+    private static final int SEGMENT = 1 << 30;
+    /**
+     * The most pixels decoded or encoded at once.
+     **/
+    private static final int BAND = 1 << 22;
+    /**
+     * The channel masks of packed 0xRRGGBB pixels.
+     **/
+    private static final int[] MASKS = { 0xFF0000, 0xFF00, 0xFF };
+    
+    /* Instance Constants */
+    /**
+     * The number of ints between the starts of two rows of
+     * the pixel file; the original width.
+     **/
+    private final int STRIDE;
+    private final int HEIGHT;
+    private final int ROWS_PER_SEGMENT;
+    private final Path DIRS_FILE;
+    private final List<IntBuffer>        PIXELS;
+    private final List<MappedByteBuffer> DIRS;
+    /**
+     * For every seam removed, its x in the top row and the step
+     * it takes into each row from the one above.
+     **/
+    private final List<Integer> LOG_TOPS;
+    private final List<byte[]>  LOG_STEPS;
+    
+    /* Instance Variables */
+    private int width;
+    
+    /*== Constructors ==*/
+    
+    /**
+     * Constructs a MappedSeam over an existing pixel file. The
+     * file is changed in place as seams are removed.
+     * 
+     * @param PIXEL_FILE
+     *      the raw pixel file.
+     * @param WIDTH
+     *      the width of the image in the file.
+     * @param HEIGHT
+     *      the height of the image in the file.
+     * @throws IOException
+     *      if either file cannot be mapped.
+     **/
+    public MappedSeam( final Path PIXEL_FILE,
+                       final int  WIDTH,
+                       final int  HEIGHT ) throws IOException
+    {
+        this( PIXEL_FILE, 0, WIDTH, HEIGHT );
+    }
+    
+    /**
+     * Constructs a MappedSeam over pixels that start OFFSET
+     * bytes into a file.
+     **/
+    private MappedSeam( final Path PIXEL_FILE,
+                        final long OFFSET,
+                        final int  WIDTH,
+                        final int  HEIGHT ) throws IOException
+    {
+        this.STRIDE           = WIDTH;
+        this.HEIGHT           = HEIGHT;
+        this.width            = WIDTH;
+        this.ROWS_PER_SEGMENT = Math.max( 1, SEGMENT / ( 4 * WIDTH ) );
+        this.LOG_TOPS         = new ArrayList<>();
+        this.LOG_STEPS        = new ArrayList<>();
+        
+        if ( Files.size( PIXEL_FILE ) < OFFSET + 4L * WIDTH * HEIGHT )
+            throw new IOException( "pixel file is smaller than " +
+                                   WIDTH + "x" + HEIGHT );
+        
+        this.DIRS_FILE = Files.createTempFile(
+            PIXEL_FILE.toAbsolutePath().getParent(), "seam", ".dirs" );
+        this.PIXELS    = new ArrayList<>();
+        this.DIRS      = map( DIRS_FILE, 0, WIDTH );
+        for ( MappedByteBuffer segment : map( PIXEL_FILE, OFFSET,
+                                              4 * WIDTH ) )
+            PIXELS.add( segment.asIntBuffer() );
+    }
+    
+    /**
+     * Writes an image to a new pixel file and constructs a
+     * MappedSeam over it.
+     * 
+     * @param IM
+     *      the image.
+     * @param PIXEL_FILE
+     *      the file to write.
+     * @return
+     *      the MappedSeam.
+     * @throws IOException
+     *      if the file cannot be written or mapped.
+     **/
+    public static MappedSeam create( final UWECImage IM,
+                                     final Path      PIXEL_FILE )
+        throws IOException
+    {
+        /* Local Constants */
+        final int WIDTH  = IM.getWidth();
+        final int HEIGHT = IM.getHeight();
+        
+        /* Local Variables */
+        ByteBuffer row = ByteBuffer.allocate( 4 * WIDTH );
+        
+        try ( FileChannel ch = FileChannel.open( PIXEL_FILE,
+                  java.nio.file.StandardOpenOption.CREATE,
+                  java.nio.file.StandardOpenOption.TRUNCATE_EXISTING,
+                  java.nio.file.StandardOpenOption.WRITE ) )
+        {
+            for ( int j = 0; j < HEIGHT; j++ )
+            {
+                row.clear();
+                row.asIntBuffer().put( IM.getPixels(), j * IM.getStride(),
+                                       WIDTH );
+                while ( row.hasRemaining() )
+                    ch.write( row );
+            }
+        }
+        return new MappedSeam( PIXEL_FILE, WIDTH, HEIGHT );
+    }
+    
+    /**
+     * Decodes an image file into a new pixel file, a band of rows
+     * at a time, and constructs a MappedSeam over it. A raw image
+     * is copied as it is, header and all. Readers that cannot
+     * seek to a band decode the rows above it again, but only the
+     * band is ever on the heap.
+     * 
+     * @param IMAGE
+     *      the image, in a format ImageIO can read or raw.
+     * @param PIXEL_FILE
+     *      the file to write.
+     * @return
+     *      the MappedSeam.
+     * @throws IOException
+     *      if the image cannot be read, or the file cannot be
+     *      written or mapped.
+     **/
+    public static MappedSeam read( final Path IMAGE,
+                                   final Path PIXEL_FILE )
+        throws IOException
+    {
+        /* Local Variables */
+        int width;
+        int height;
+        
+        if ( RawImage.isRaw( IMAGE.getFileName().toString() ) )
+        {
+            Files.copy( IMAGE, PIXEL_FILE,
+                        StandardCopyOption.REPLACE_EXISTING );
+            return open( PIXEL_FILE );
+        }
+        
+        try ( ImageInputStream in =
+                  ImageIO.createImageInputStream( IMAGE.toFile() );
+              FileChannel ch = FileChannel.open( PIXEL_FILE,
+                  StandardOpenOption.CREATE,
+                  StandardOpenOption.TRUNCATE_EXISTING,
+                  StandardOpenOption.WRITE ) )
+        {
+            /* Block Variables */
+            Iterator<ImageReader> readers;
+            ImageReader           reader;
+            
+            if ( null == in ||
+                 !( readers = ImageIO.getImageReaders( in ) ).hasNext() )
+                throw new IOException( "no reader for " + IMAGE );
+            
+            reader = readers.next();
+            try
+            {
+                /* Block Variables */
+                ImageReadParam param = reader.getDefaultReadParam();
+                ByteBuffer     bytes;
+                int[]          row;
+                int            rows;
+                
+                reader.setInput( in );
+                width  = reader.getWidth( 0 );
+                height = reader.getHeight( 0 );
+                rows   = Math.max( 1, BAND / width );
+                bytes  = ByteBuffer.allocate( 4 * width );
+                row    = new int[width];
+                
+                /* Decode a Band, Then Write It a Row at a Time */
+                for ( int y = 0; y < height; y += rows )
+                {
+                    param.setSourceRegion( new Rectangle(
+                        0, y, width, Math.min( rows, height - y ) ) );
+                    BufferedImage band = reader.read( 0, param );
+                    
+                    for ( int j = 0; j < band.getHeight(); j++ )
+                    {
+                        band.getRGB( 0, j, width, 1, row, 0, width );
+                        for ( int i = 0; i < width; i++ )
+                            row[i] &= 0xFFFFFF;
+                        bytes.clear();
+                        bytes.asIntBuffer().put( row );
+                        while ( bytes.hasRemaining() )
+                            ch.write( bytes );
+                    }
+                }
+            }
+            finally
+            {
+                reader.dispose();
+            }
+        }
+        return new MappedSeam( PIXEL_FILE, width, height );
+    }
+    
+    /**
+     * Constructs a MappedSeam over the pixels of a raw image
+     * written by RawImage, leaving its header alone. The file is
+     * changed in place as seams are removed, but its header keeps
+     * the original width.
+     * 
+     * @param RAW_FILE
+     *      the raw image.
+     * @return
+     *      the MappedSeam.
+     * @throws IOException
+     *      if the file is not a raw image or cannot be mapped.
+     **/
+    public static MappedSeam open( final Path RAW_FILE ) throws IOException
+    {
+        /* Local Constants */
+        final int[] SIZE = RawImage.readHeader( RAW_FILE );
+        
+        return new MappedSeam( RAW_FILE, SIZE[2], SIZE[0], SIZE[1] );
+    }
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Shrinks the image by removing a given number of vertical
+     * seams, one streaming pass over the rows per seam.
+     * 
+     * @param DEC_WIDTH
+     *      the number of vertical seams to remove.
+     * @return
+     *      the total energy of the removed seams.
+     **/
+    public long shrink( final int DEC_WIDTH )
+    {
+        /* Local Variables */
+        SeamMaps maps    = new SeamMaps( STRIDE, 1, true );
+        int[]    row     = new int[STRIDE];
+        int      pending = -1;
+        long     cost    = 0;
+        
+        for ( int k = 0; k < DEC_WIDTH && 1 < width; k++ )
+        {
+            /* Block Variables */
+            int    last = maps.weightRow( HEIGHT-1 );
+            byte[] steps;
+            int    x;
+            
+            /* Stream Rows Through the DP */
+            maps.span = width;
+            for ( int j = 0, cut = 0; j < HEIGHT; j++ )
+            {
+                if ( 0 > pending )
+                    readRow( j, row, width );
+                else
+                {
+                    cut = nextCut( pending, j, cut );
+                    removeCut( j, row, cut );
+                }
+                
+                ScalarEnergy.GRADIENT.energyRow( row, 1, 0, maps, 0,
+                                                 0, width );
+                if ( 0 == j )
+                    System.arraycopy( maps.ENERGY, 0,
+                                      maps.PATH_WEIGHTS, 0, width );
+                else
+                    Seam.pathWeightRow( maps, 0, maps.weightRow( j-1 ),
+                                        maps.weightRow( j ), 0, width );
+                writeDirs( j, maps.DIRS );
+            }
+            
+            /* Find Minimum Path Energy for Bottom Pixel */
+            x = 0;
+            for ( int i = 0; i < width; i++ )
+                if ( maps.PATH_WEIGHTS[last + i] <
+                     maps.PATH_WEIGHTS[last + x] )
+                    x = i;
+            cost += maps.PATH_WEIGHTS[last + x];
+            
+            /* Trace Seam Into the Log */
+            steps = new byte[HEIGHT];
+            for ( int j = HEIGHT-1; j > 0; j-- )
+            {
+                steps[j] = (byte)-readDir( j, x );
+                x -= steps[j];
+            }
+            LOG_TOPS.add( x );
+            LOG_STEPS.add( steps );
+            pending = LOG_STEPS.size() - 1;
+            width--;
+        }
+        
+        /* Remove the Last Seam */
+        if ( 0 <= pending )
+            for ( int j = 0, cut = 0; j < HEIGHT; j++ )
+            {
+                cut = nextCut( pending, j, cut );
+                removeCut( j, row, cut );
+            }
+        return cost;
+    }
+    
+    /**
+     * Writes the carved image to a file in the format its
+     * extension names, a row at a time: raw images straight
+     * from the mapping, anything else through ImageIO. The PNG
+     * writer asks for one row at a time, so only that row is on
+     * the heap; writers that want the whole image at once, such
+     * as JPEG's, still gather it there.
+     * 
+     * @param IMAGE
+     *      the file to write.
+     * @throws IOException
+     *      if the file cannot be written or no writer knows the
+     *      format.
+     **/
+    public void write( final Path IMAGE ) throws IOException
+    {
+        /* Local Constants */
+        final String NAME   = IMAGE.getFileName().toString();
+        final String FORMAT = NAME.substring( NAME.lastIndexOf( '.' ) + 1 );
+        
+        if ( !RawImage.isRaw( NAME ) )
+        {
+            if ( !ImageIO.write( new Rows(), FORMAT, IMAGE.toFile() ) )
+                throw new IOException( "no writer for " + FORMAT );
+            return;
+        }
+        
+        try ( FileChannel ch = FileChannel.open( IMAGE,
+                                  StandardOpenOption.CREATE,
+                                  StandardOpenOption.TRUNCATE_EXISTING,
+                                  StandardOpenOption.WRITE ) )
+        {
+            /* Local Variables */
+            ByteBuffer header = RawImage.header( width, HEIGHT );
+            ByteBuffer bytes  = ByteBuffer.allocate( 4 * width );
+            int[]      row    = new int[STRIDE];
+            
+            while ( header.hasRemaining() )
+                ch.write( header );
+            for ( int j = 0; j < HEIGHT; j++ )
+            {
+                readRow( j, row, width );
+                bytes.clear();
+                bytes.asIntBuffer().put( row, 0, width );
+                while ( bytes.hasRemaining() )
+                    ch.write( bytes );
+            }
+        }
+    }
+    
+    /**
+     * Releases the scratch file. The pixel file is left as is.
+     **/
+    @Override
+    public void close() throws IOException
+    {
+        PIXELS.clear();
+        DIRS.clear();
+        Files.deleteIfExists( DIRS_FILE );
+    }
+    
+    /*== Accessors ==*/
+    
+    public int getWidth()
+    {
+        return width;
+    }
+    
+    public int getHeight()
+    {
+        return HEIGHT;
+    }
+    
+    /**
+     * Returns the number of seams removed so far.
+     **/
+    public int getSeamCount()
+    {
+        return LOG_TOPS.size();
+    }
+    
+    /**
+     * Returns the K-th seam removed, as the x coordinate of the
+     * seam in each row at the time it was removed.
+     * 
+     * @param K
+     *      the seam, counting from 0.
+     * @return
+     *      the seam.
+     **/
+    public int[] getSeam( final int K )
+    {
+        /* Local Constants */
+        final byte[] STEPS = LOG_STEPS.get( K );
+        
+        /* Local Variables */
+        int[] seam = new int[HEIGHT];
+        
+        seam[0] = LOG_TOPS.get( K );
+        for ( int j = 1; j < HEIGHT; j++ )
+            seam[j] = seam[j-1] + STEPS[j];
+        return seam;
+    }
+    
+    /**
+     * Copies the carved image onto the heap. Only sensible for
+     * images that fit there; see write for those that do not.
+     * 
+     * @return
+     *      the image.
+     **/
+    public UWECImage toImage()
+    {
+        /* Local Variables */
+        UWECImage im  = new UWECImage( width, HEIGHT );
+        int[]     row = new int[STRIDE];
+        
+        for ( int j = 0; j < HEIGHT; j++ )
+        {
+            readRow( j, row, width );
+            im.setRow( j, row, 0 );
+        }
+        return im;
+    }
+    
+    /**
+     * Maps a file from OFFSET on in segments of whole rows,
+     * growing it to hold HEIGHT rows first if need be.
+     **/
+    private List<MappedByteBuffer> map( final Path FILE,
+                                        final long OFFSET,
+                                        final int  ROW_BYTES )
+        throws IOException
+    {
+        /* Local Constants */
+        final long SIZE  = OFFSET + (long)ROW_BYTES * HEIGHT;
+        final long CHUNK = (long)ROW_BYTES * ROWS_PER_SEGMENT;
+        
+        /* Local Variables */
+        List<MappedByteBuffer> segments = new ArrayList<>();
+        
+        try ( RandomAccessFile f = new RandomAccessFile( FILE.toFile(), "rw" );
+              FileChannel ch = f.getChannel() )
+        {
+            if ( f.length() < SIZE )
+                f.setLength( SIZE );
+            for ( long at = OFFSET; at < SIZE; at += CHUNK )
+                segments.add( ch.map( FileChannel.MapMode.READ_WRITE, at,
+                                      Math.min( CHUNK, SIZE - at ) ) );
+        }
+        return segments;
+    }
+    
+    /**
+     * Returns where seam K crosses row J, given where it
+     * crossed row J-1.
+     **/
+    private int nextCut( final int K, final int J, final int CUT )
+    {
+        return 0 == J ? LOG_TOPS.get( K ) : CUT + LOG_STEPS.get( K )[J];
+    }
+    
+    /**
+     * Reads row J into ROW, closes the gap left by removing the
+     * pixel at CUT, and writes the shifted part back. The row
+     * held width+1 pixels before the cut.
+     **/
+    private void removeCut( final int J, final int[] ROW, final int CUT )
+    {
+        readRow( J, ROW, width + 1 );
+        System.arraycopy( ROW, CUT + 1, ROW, CUT, width - CUT );
+        
+        IntBuffer out = PIXELS.get( J / ROWS_PER_SEGMENT ).duplicate();
+        out.position( ( J % ROWS_PER_SEGMENT ) * STRIDE + CUT );
+        out.put( ROW, CUT, width - CUT );
+    }
+    
+    /**
+     * Reads the first COUNT pixels of row J into ROW.
+     **/
+    private void readRow( final int J, final int[] ROW, final int COUNT )
+    {
+        IntBuffer in = PIXELS.get( J / ROWS_PER_SEGMENT ).duplicate();
+        in.position( ( J % ROWS_PER_SEGMENT ) * STRIDE );
+        in.get( ROW, 0, COUNT );
+    }
+    
+    /**
+     * Writes the directions for row J to the scratch file.
+     **/
+    private void writeDirs( final int J, final byte[] DIRS_ROW )
+    {
+        ByteBuffer out = DIRS.get( J / ROWS_PER_SEGMENT ).duplicate();
+        out.position( ( J % ROWS_PER_SEGMENT ) * STRIDE );
+        out.put( DIRS_ROW, 0, width );
+    }
+    
+    /**
+     * Reads the direction recorded for pixel X of row J.
+     **/
+    private byte readDir( final int J, final int X )
+    {
+        return DIRS.get( J / ROWS_PER_SEGMENT )
+                   .get( ( J % ROWS_PER_SEGMENT ) * STRIDE + X );
+    }
+    
+    /**
+     * Class to show the carved rows to ImageIO as an image, read
+     * out of the mapping in tiles of whole rows as they are
+     * asked for.
+     **/
+    private class Rows implements RenderedImage
+    {
+        /* Instance Constants */
+        private final int         WIDTH;
+        private final int         TILE_ROWS;
+        private final ColorModel  COLORS;
+        private final SampleModel SAMPLES;
+        /**
+         * Room for one row of the pixel file.
+         **/
+        private final int[]       ROW;
+        
+        /*== Constructors ==*/
+        
+        private Rows()
+        {
+            this.WIDTH     = width;
+            this.TILE_ROWS = Math.max( 1, BAND / width );
+            this.COLORS    = new DirectColorModel( 24, MASKS[0], MASKS[1],
+                                                   MASKS[2] );
+            this.SAMPLES   = COLORS.createCompatibleSampleModel( WIDTH,
+                                                                 TILE_ROWS );
+            this.ROW       = new int[STRIDE];
+        }
+        
+        /*== Accessors ==*/
+        
+        @Override
+        public Vector<RenderedImage> getSources()
+        {
+            return null;
+        }
+        
+        @Override
+        public Object getProperty( final String NAME )
+        {
+            return Image.UndefinedProperty;
+        }
+        
+        @Override
+        public String[] getPropertyNames()
+        {
+            return null;
+        }
+        
+        @Override
+        public ColorModel getColorModel()
+        {
+            return COLORS;
+        }
+        
+        @Override
+        public SampleModel getSampleModel()
+        {
+            return SAMPLES;
+        }
+        
+        @Override
+        public int getWidth()
+        {
+            return WIDTH;
+        }
+        
+        @Override
+        public int getHeight()
+        {
+            return HEIGHT;
+        }
+        
+        @Override
+        public int getMinX()
+        {
+            return 0;
+        }
+        
+        @Override
+        public int getMinY()
+        {
+            return 0;
+        }
+        
+        @Override
+        public int getNumXTiles()
+        {
+            return 1;
+        }
+        
+        @Override
+        public int getNumYTiles()
+        {
+            return ( HEIGHT + TILE_ROWS - 1 ) / TILE_ROWS;
+        }
+        
+        @Override
+        public int getMinTileX()
+        {
+            return 0;
+        }
+        
+        @Override
+        public int getMinTileY()
+        {
+            return 0;
+        }
+        
+        @Override
+        public int getTileWidth()
+        {
+            return WIDTH;
+        }
+        
+        @Override
+        public int getTileHeight()
+        {
+            return TILE_ROWS;
+        }
+        
+        @Override
+        public int getTileGridXOffset()
+        {
+            return 0;
+        }
+        
+        @Override
+        public int getTileGridYOffset()
+        {
+            return 0;
+        }
+        
+        @Override
+        public Raster getTile( final int TILE_X, final int TILE_Y )
+        {
+            return getData( new Rectangle( 0, TILE_Y * TILE_ROWS,
+                                           WIDTH, TILE_ROWS ) );
+        }
+        
+        @Override
+        public Raster getData()
+        {
+            return getData( new Rectangle( WIDTH, HEIGHT ) );
+        }
+        
+        /**
+         * Reads the part of the image inside a rectangle out of
+         * the mapping.
+         **/
+        @Override
+        public Raster getData( final Rectangle AREA )
+        {
+            /* Local Constants */
+            final Rectangle      PART   =
+                AREA.intersection( new Rectangle( WIDTH, HEIGHT ) );
+            final WritableRaster RASTER = Raster.createPackedRaster(
+                DataBuffer.TYPE_INT, PART.width, PART.height, MASKS,
+                new Point( PART.x, PART.y ) );
+            final int[]          DATA   =
+                ( (DataBufferInt)RASTER.getDataBuffer() ).getData();
+            
+            for ( int j = 0; j < PART.height; j++ )
+            {
+                readRow( PART.y + j, ROW, PART.x + PART.width );
+                System.arraycopy( ROW, PART.x, DATA, j * PART.width,
+                                  PART.width );
+            }
+            return RASTER;
+        }
+        
+        @Override
+        public WritableRaster copyData( WritableRaster raster )
+        {
+            if ( null == raster )
+                raster = COLORS.createCompatibleWritableRaster( WIDTH,
+                                                                HEIGHT );
+            raster.setRect( getData( raster.getBounds() ) );
+            return raster;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Interface for the inner loop of the path weight pass: the
+ * cheapest of the three pixels above, plus the pixel's own
+ * energy, for a run of pixels away from the edges of a row.
+ * When the energy function charges steps, the diagonal
+ * candidates above also carry the cost of stepping in.
+ **/
+
+interface PathWeightKernel
+{
+    /**
+     * Calculates the path weights and directions of pixels
+     * [FROM, TO) of a row, given that the row above is
+     * complete. Neither edge pixel may be in the run. Ties go
+     * to the leftmost candidate.
+     * 
+     * @param PATH_WEIGHT
+     *      the path weight map.
+     * @param DIRS
+     *      the direction map.
+     * @param ENERGY
+     *      the energy map.
+     * @param PREV
+     *      the offset of the row above in the path weight map.
+     * @param CUR
+     *      the offset of the row in the path weight map.
+     * @param ROW
+     *      the offset of the row in the energy and direction maps.
+     * @param FROM
+     *      the first pixel to calculate (at least 1).
+     * @param TO
+     *      one past the last pixel to calculate (at most one
+     *      less than the width of the row).
+     **/
+    void middleRow( int[]  PATH_WEIGHT,
+                    byte[] DIRS,
+                    int[]  ENERGY,
+                    int    PREV,
+                    int    CUR,
+                    int    ROW,
+                    int    FROM,
+                    int    TO );
+    
+    /**
+     * Calculates the path weights and directions of pixels
+     * [FROM, TO) of a row as above, adding the cost of a step
+     * in from the upper left or upper right to that candidate.
+     * By default this runs a pixel at a time.
+     * 
+     * @param PATH_WEIGHT
+     *      the path weight map.
+     * @param DIRS
+     *      the direction map.
+     * @param ENERGY
+     *      the energy map.
+     * @param STEP_LEFT
+     *      the cost of a step in from the upper left.
+     * @param STEP_RIGHT
+     *      the cost of a step in from the upper right.
+     * @param PREV
+     *      the offset of the row above in the path weight map.
+     * @param CUR
+     *      the offset of the row in the path weight map.
+     * @param ROW
+     *      the offset of the row in the energy, step and
+     *      direction maps.
+     * @param FROM
+     *      the first pixel to calculate (at least 1).
+     * @param TO
+     *      one past the last pixel to calculate (at most one
+     *      less than the width of the row).
+     **/
+    default void middleRow( final int[]  PATH_WEIGHT,
+                            final byte[] DIRS,
+                            final int[]  ENERGY,
+                            final int[]  STEP_LEFT,
+                            final int[]  STEP_RIGHT,
+                            final int    PREV,
+                            final int    CUR,
+                            final int    ROW,
+                            final int    FROM,
+                            final int    TO )
+    {
+        Seam.middleRow( PATH_WEIGHT, DIRS, ENERGY, STEP_LEFT, STEP_RIGHT,
+                        PREV, CUR, ROW, FROM, TO );
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class to fill a path weight map as a wavefront: every row
+ * is split into chunks, one per worker, and the workers meet
+ * at a barrier before moving on to the next row.
+ * <p>
+ * Each weight is computed exactly as in the serial pass, so
+ * the resulting map is identical.
+ **/
+
+class PathWeightsTask extends RecursiveAction
+{
+    /* Class Constants */
+    private static final long serialVersionUID = 1L;
+    /**
+     * The narrowest chunk worth a barrier per row (in pixels).
+     **/
+    static final int MIN_CHUNK = 512;
+    
+    /* Instance Constants */
+    private final SeamMaps MAPS;
+    private final int      CHUNKS;
+    private final int      CHUNK;
+    private final Phaser   BARRIER;
+    
+    /*== Constructors ==*/
+    
+    /**
+     * Constructs a PathWeightsTask that fills the path weights
+     * and directions of a set of maps using a given number of
+     * workers.
+     * 
+     * @param MAPS
+     *      the maps to fill.
+     * @param CHUNKS
+     *      the number of workers (and chunks per row).
+     **/
+    PathWeightsTask( final SeamMaps MAPS, final int CHUNKS )
+    {
+        this( MAPS, CHUNKS, -1, null );
+    }
+    
+    /**
+     * Constructs a PathWeightsTask for one chunk of every row.
+     **/
+    private PathWeightsTask( final SeamMaps MAPS,
+                             final int      CHUNKS,
+                             final int      CHUNK,
+                             final Phaser   BARRIER )
+    {
+        this.MAPS    = MAPS;
+        this.CHUNKS  = CHUNKS;
+        this.CHUNK   = CHUNK;
+        this.BARRIER = BARRIER;
+    }
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Fills this task's share of the map. The root task forks
+     * a worker per chunk and takes the first chunk itself.
+     **/
+    @Override
+    protected void compute()
+    {
+        if ( 0 > CHUNK )
+        {
+            /* Local Variables */
+            Phaser barrier = new Phaser( CHUNKS );
+            PathWeightsTask[] workers = new PathWeightsTask[CHUNKS];
+            
+            /* Start Workers */
+            for ( int c = CHUNKS-1; c >= 0; c-- )
+                workers[c] = new PathWeightsTask( MAPS, CHUNKS, c, barrier );
+            for ( int c = 1; c < CHUNKS; c++ )
+                workers[c].fork();
+            
+            workers[0].compute();
+            for ( int c = 1; c < CHUNKS; c++ )
+                workers[c].join();
+            return;
+        }
+        
+        /* Local Constants */
+        final int WIDTH  = MAPS.span;
+        final int FROM   = (int)( (long)WIDTH * CHUNK / CHUNKS );
+        final int TO     = (int)( (long)WIDTH * ( CHUNK+1 ) / CHUNKS );
+        
+        /* Calculate Minimum Energy Paths */
+        System.arraycopy( MAPS.ENERGY, FROM,
+                          MAPS.PATH_WEIGHTS, FROM, TO - FROM );
+        
+        for ( int j = 1; j < MAPS.LENGTH; j++ )
+        {
+            BARRIER.arriveAndAwaitAdvance();
+            Seam.pathWeightRow( MAPS, j, MAPS.weightRow( j-1 ),
+                                MAPS.weightRow( j ), FROM, TO );
+        }
+        BARRIER.arriveAndDeregister();
+    }
+}
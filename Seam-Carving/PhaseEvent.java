@@ -0,0 +1,57 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Class for the JFR event recorded for a timed call of a phase
+ * of seam carving. The event is begun as the call starts and
+ * committed by SeamMetrics.record as it ends, so its start time
+ * and duration are the call's own.
+ **/
+
+@Name( "seam.Phase" )
+@Label( "Seam Phase" )
+@Category( "Seam Carving" )
+@Description( "One timed call of a phase of seam carving." )
+class PhaseEvent extends Event
+{
+    /* Class Constants */
+    /**
+     * The type of the event, to ask whether it is being
+     * recorded without making one.
+     **/
+    private static final EventType TYPE =
+        EventType.getEventType( PhaseEvent.class );
+    
+    /* Instance Variables */
+    @Label( "Phase" )
+    String phase;
+    
+    @Label( "Pixels" )
+    long pixels;
+    
+    /*== Accessors ==*/
+    
+    /**
+     * Returns a new event, already begun, if a flight recording
+     * with the event enabled is running, otherwise null; nothing
+     * is allocated while none is.
+     * 
+     * @return
+     *      the begun event, or null.
+     **/
+    static PhaseEvent start()
+    {
+        /* Local Variables */
+        PhaseEvent event;
+        
+        if ( !TYPE.isEnabled() )
+            return null;
+        event = new PhaseEvent();
+        event.begin();
+        return event;
+    }
+}
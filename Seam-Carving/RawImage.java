@@ -0,0 +1,261 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Class to read and write images in a raw format that needs no
+ * decoding: a 16 byte header (magic, width, height, header
+ * size) followed by the pixels as packed 0xRRGGBB ints, row by
+ * row, big-endian.
+ * <p>
+ * Pixels go between the file and the image's own pixel array
+ * through a FileChannel in large blocks, or, when reading, a
+ * mapping of the file. After the header the file is laid out
+ * exactly as a MappedSeam pixel file; see MappedSeam.open.
+ **/
+
+public class RawImage
+{
+    /* Class Constants */
+    /**
+     * The file name extension of raw images.
+     **/
+    public static final String EXTENSION = ".rawi";
+    /**
+     * The size of the header (in bytes).
+     **/
+    static final int HEADER = 16;
+    private static final int MAGIC = 0x53524157; // "SRAW"
+    /**
+     * The most bytes moved through the channel at once.
+     **/
+    private static final int BLOCK = 1 << 20;
+    
+    /*== Constructors ==*/
+    
+    private RawImage()
+    {}
+    
+    /*== Accessors ==*/
+    
+    /**
+     * Returns whether a file name has the raw image extension.
+     **/
+    public static boolean isRaw( final String FILENAME )
+    {
+        return FILENAME.toLowerCase( Locale.ROOT ).endsWith( EXTENSION );
+    }
+    
+    /**
+     * Reads a raw image through its channel.
+     * 
+     * @param FILE
+     *      the file.
+     * @return
+     *      the image.
+     * @throws IOException
+     *      if the file cannot be read or is not a raw image.
+     **/
+    public static UWECImage read( final Path FILE ) throws IOException
+    {
+        return read( FILE, false );
+    }
+    
+    /**
+     * Reads a raw image, either through its channel or by
+     * mapping it and copying the pixels straight out of the
+     * mapping, which saves a copy through a buffer.
+     * 
+     * @param FILE
+     *      the file.
+     * @param MAP
+     *      whether to map the file.
+     * @return
+     *      the image.
+     * @throws IOException
+     *      if the file cannot be read or is not a raw image.
+     **/
+    public static UWECImage read( final Path    FILE,
+                                  final boolean MAP ) throws IOException
+    {
+        try ( FileChannel ch = FileChannel.open( FILE,
+                                                 StandardOpenOption.READ ) )
+        {
+            /* Local Constants */
+            final int[] SIZE = readHeader( ch );
+            
+            /* Local Variables */
+            UWECImage im = new UWECImage( SIZE[0], SIZE[1] );
+            
+            if ( MAP )
+            {
+                /* Block Variables */
+                IntBuffer pixels = ch.map( FileChannel.MapMode.READ_ONLY,
+                                           SIZE[2],
+                                           4L * SIZE[0] * SIZE[1] )
+                                     .asIntBuffer();
+                
+                for ( int j = 0; j < SIZE[1]; j++ )
+                    pixels.get( im.getPixels(), j * im.getStride(),
+                                SIZE[0] );
+            }
+            else
+                transfer( ch, SIZE[2], im, false );
+            return im;
+        }
+    }
+    
+    /**
+     * Reads the width and height from a raw image's header.
+     * 
+     * @param FILE
+     *      the file.
+     * @return
+     *      the width, height and header size.
+     * @throws IOException
+     *      if the file cannot be read or is not a raw image.
+     **/
+    public static int[] readHeader( final Path FILE ) throws IOException
+    {
+        try ( FileChannel ch = FileChannel.open( FILE,
+                                                 StandardOpenOption.READ ) )
+        {
+            return readHeader( ch );
+        }
+    }
+    
+    /**
+     * Writes an image as a raw image, replacing the file if it
+     * exists.
+     * 
+     * @param IM
+     *      the image.
+     * @param FILE
+     *      the file.
+     * @throws IOException
+     *      if the file cannot be written.
+     **/
+    public static void write( final UWECImage IM,
+                              final Path      FILE ) throws IOException
+    {
+        try ( FileChannel ch = FileChannel.open( FILE,
+                                  StandardOpenOption.CREATE,
+                                  StandardOpenOption.TRUNCATE_EXISTING,
+                                  StandardOpenOption.WRITE ) )
+        {
+            /* Local Variables */
+            ByteBuffer header = header( IM.getWidth(), IM.getHeight() );
+            
+            while ( header.hasRemaining() )
+                ch.write( header );
+            transfer( ch, HEADER, IM, true );
+        }
+    }
+    
+    /**
+     * Returns the header of a raw image of a given size, ready
+     * to be written.
+     * 
+     * @param WIDTH
+     *      the width of the image.
+     * @param HEIGHT
+     *      the height of the image.
+     * @return
+     *      the header.
+     **/
+    static ByteBuffer header( final int WIDTH, final int HEIGHT )
+    {
+        return ByteBuffer.allocate( HEADER ).putInt( MAGIC )
+                         .putInt( WIDTH ).putInt( HEIGHT )
+                         .putInt( HEADER ).flip();
+    }
+    
+    /**
+     * Checks a raw image's header and returns its width, height
+     * and header size.
+     **/
+    private static int[] readHeader( final FileChannel CH )
+        throws IOException
+    {
+        /* Local Variables */
+        ByteBuffer header = ByteBuffer.allocate( HEADER );
+        int[]      size;
+        
+        while ( header.hasRemaining() )
+            if ( 0 > CH.read( header, header.position() ) )
+                throw new IOException( "truncated raw image header" );
+        
+        if ( MAGIC != header.getInt( 0 ) )
+            throw new IOException( "not a raw image" );
+        size = new int[] { header.getInt( 4 ), header.getInt( 8 ),
+                           header.getInt( 12 ) };
+        if ( 1 > size[0] || 1 > size[1] || HEADER > size[2] )
+            throw new IOException( "bad raw image header" );
+        if ( CH.size() < size[2] + 4L * size[0] * size[1] )
+            throw new IOException( "truncated raw image" );
+        return size;
+    }
+    
+    /**
+     * Moves an image's pixels between its pixel array and a
+     * channel, whole rows at a time in blocks of up to BLOCK
+     * bytes.
+     * 
+     * @param CH
+     *      the channel.
+     * @param OFFSET
+     *      where the pixels start in the channel.
+     * @param IM
+     *      the image.
+     * @param WRITE
+     *      whether to write the pixels rather than read them.
+     **/
+    private static void transfer( final FileChannel CH,
+                                  final long        OFFSET,
+                                  final UWECImage   IM,
+                                  final boolean     WRITE )
+        throws IOException
+    {
+        /* Local Constants */
+        final int   WIDTH  = IM.getWidth();
+        final int   HEIGHT = IM.getHeight();
+        final int   ROWS   = Math.max( 1, BLOCK / ( 4 * WIDTH ) );
+        final int[] PIXELS = IM.getPixels();
+        
+        /* Local Variables */
+        ByteBuffer block = ByteBuffer.allocateDirect( 4 * WIDTH * ROWS );
+        IntBuffer  ints  = block.asIntBuffer();
+        long       at    = OFFSET;
+        
+        for ( int j = 0; j < HEIGHT; j += ROWS )
+        {
+            /* Block Variables */
+            int rows = Math.min( ROWS, HEIGHT - j );
+            
+            block.clear().limit( 4 * WIDTH * rows );
+            ints.clear();
+            if ( WRITE )
+                for ( int r = 0; r < rows; r++ )
+                    ints.put( PIXELS, ( j + r ) * IM.getStride(), WIDTH );
+            
+            while ( block.hasRemaining() )
+            {
+                /* Block Variables */
+                int moved = WRITE ? CH.write( block, at ) :
+                                    CH.read( block, at );
+                
+                if ( 0 > moved )
+                    throw new IOException( "truncated raw image" );
+                at += moved;
+            }
+            
+            if ( !WRITE )
+                for ( int r = 0; r < rows; r++ )
+                    ints.get( PIXELS, ( j + r ) * IM.getStride(), WIDTH );
+        }
+    }
+}
@@ -0,0 +1,288 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class to retarget an image to any narrower width without
+ * carving it again.
+ * <p>
+ * The index records, for every pixel, the step at which
+ * fastVSShrink removed it. Narrowing an image by k pixels is
+ * then a single pass keeping each pixel whose step is at least
+ * k. Pixels that were never removed get the highest step.
+ * <p>
+ * On disk an index is a 16 byte header (magic, width, height,
+ * bytes per step) followed by the steps in row-major order,
+ * two bytes each when the width allows it.
+ **/
+
+public class RetargetIndex implements SeamListener
+{
+    /* Class Constants */
+    private static final int MAGIC  = 0x53524958; // "SRIX"
+    private static final int HEADER = 16;
+    
+    /* Instance Constants */
+    private final int        WIDTH;
+    private final int        HEIGHT;
+    private final int        BYTES;
+    private final ByteBuffer STEPS;
+    
+    /* Instance Variables */
+    /**
+     * While building, the original x of every pixel left in the
+     * image being carved; packed into an image so it can be
+     * carved alongside it.
+     **/
+    private UWECImage origin;
+    private int       removed;
+    
+    /*== Constructors ==*/
+    
+    /**
+     * Constructs an index for a given size with every pixel
+     * marked as never removed.
+     * 
+     * @throws IllegalArgumentException
+     *      if the index would not fit in one buffer.
+     **/
+    private RetargetIndex( final int WIDTH, final int HEIGHT )
+    {
+        /* Local Constants */
+        final int  BYTES = WIDTH <= 0xFFFF ? 2 : 4;
+        final long SIZE  = HEADER + (long)WIDTH * HEIGHT * BYTES;
+        
+        if ( Integer.MAX_VALUE < SIZE )
+            throw new IllegalArgumentException(
+                "a " + WIDTH + "x" + HEIGHT + " image needs a " + SIZE +
+                " byte index, more than the " + Integer.MAX_VALUE +
+                " bytes a buffer can hold" );
+        
+        this.WIDTH  = WIDTH;
+        this.HEIGHT = HEIGHT;
+        this.BYTES  = BYTES;
+        this.STEPS  = ByteBuffer.allocate( (int)SIZE );
+        
+        STEPS.putInt( 0, MAGIC ).putInt( 4, WIDTH ).putInt( 8, HEIGHT )
+             .putInt( 12, BYTES );
+        for ( int p = 0; p < WIDTH * HEIGHT; p++ )
+            setStep( p, WIDTH-1 );
+    }
+    
+    /**
+     * Constructs an index over the steps in a given buffer.
+     **/
+    private RetargetIndex( final ByteBuffer STEPS ) throws IOException
+    {
+        if ( MAGIC != STEPS.getInt( 0 ) )
+            throw new IOException( "not a retargeting index" );
+        
+        this.WIDTH  = STEPS.getInt( 4 );
+        this.HEIGHT = STEPS.getInt( 8 );
+        this.BYTES  = STEPS.getInt( 12 );
+        this.STEPS  = STEPS;
+        
+        if ( 2 != BYTES && 4 != BYTES )
+            throw new IOException( "bad retargeting index: " + BYTES +
+                                   " bytes per step, not 2 or 4" );
+        if ( 1 > WIDTH || 1 > HEIGHT )
+            throw new IOException( "bad retargeting index: size " + WIDTH +
+                                   "x" + HEIGHT );
+        if ( STEPS.capacity() < HEADER + (long)WIDTH * HEIGHT * BYTES )
+            throw new IOException( "truncated retargeting index" );
+    }
+    
+    /**
+     * Builds the index for a given image by carving a copy of
+     * it down to one pixel wide.
+     * 
+     * @param IM
+     *      the image; it is not changed.
+     * @param seam
+     *      the Seam to carve with; its seam listener is set
+     *      aside while the index is built and put back after.
+     * @return
+     *      the index.
+     * @throws IllegalArgumentException
+     *      if the image is too large to index.
+     **/
+    public static RetargetIndex build( final UWECImage IM, Seam seam )
+    {
+        /* Local Constants */
+        final int WIDTH  = IM.getWidth();
+        final int HEIGHT = IM.getHeight();
+        
+        final SeamListener LISTENER = seam.getSeamListener();
+        
+        /* Local Variables */
+        RetargetIndex index = new RetargetIndex( WIDTH, HEIGHT );
+        int[] origin;
+        
+        /* Number Every Column */
+        index.origin = new UWECImage( WIDTH, HEIGHT );
+        origin = index.origin.getPixels();
+        for ( int j = 0; j < HEIGHT; j++ )
+            for ( int i = 0; i < WIDTH; i++ )
+                origin[j * index.origin.getStride() + i] = i;
+        
+        /* Record Every Seam */
+        seam.setSeamListener( index );
+        try
+        {
+            seam.fastVSShrink( IM.copy(), WIDTH-1 );
+        }
+        finally
+        {
+            seam.setSeamListener( LISTENER );
+        }
+        index.origin = null;
+        return index;
+    }
+    
+    /**
+     * Loads an index written by write(), mapping the file
+     * rather than reading it in.
+     * 
+     * @param filename
+     *      the index file.
+     * @return
+     *      the index.
+     * @throws IOException
+     *      if the file cannot be mapped or is not an index.
+     **/
+    public static RetargetIndex load( String filename ) throws IOException
+    {
+        try ( FileChannel ch = FileChannel.open( Paths.get( filename ),
+                                                 StandardOpenOption.READ ) )
+        {
+            return new RetargetIndex(
+                ch.map( FileChannel.MapMode.READ_ONLY, 0, ch.size() ) );
+        }
+    }
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Records the step of every pixel in a batch of vertical
+     * seams, then carves them out of the column numbering.
+     **/
+    @Override
+    public void seamsRemoved( int[][] seams, boolean horizontal )
+    {
+        if ( horizontal || null == origin )
+            return;
+        
+        /* Local Constants */
+        final int[] ORIGIN = origin.getPixels();
+        final int   STRIDE = origin.getStride();
+        
+        /* Record Steps */
+        for ( int s = 0; s < seams.length; s++ )
+            for ( int j = 0; j < HEIGHT; j++ )
+                setStep( j * WIDTH + ORIGIN[j * STRIDE + seams[s][j]],
+                         removed + s );
+        
+        origin.removeVerticalSeams( seams );
+        removed += seams.length;
+    }
+    
+    /*== Accessors ==*/
+    
+    /**
+     * Returns the width of the images this index is for.
+     **/
+    public int getWidth()
+    {
+        return WIDTH;
+    }
+    
+    /**
+     * Returns the height of the images this index is for.
+     **/
+    public int getHeight()
+    {
+        return HEIGHT;
+    }
+    
+    /**
+     * Creates a copy of a given image narrowed to a given width.
+     * 
+     * @param IM
+     *      the image the index was built for.
+     * @param TARGET_WIDTH
+     *      the new width, between 1 and the image's width.
+     * @return
+     *      the narrowed image.
+     **/
+    public UWECImage retarget( final UWECImage IM, final int TARGET_WIDTH )
+    {
+        if ( IM.getWidth() != WIDTH || IM.getHeight() != HEIGHT )
+            throw new IllegalArgumentException( "index is for a " + WIDTH +
+                                                "x" + HEIGHT + " image" );
+        if ( 1 > TARGET_WIDTH || WIDTH < TARGET_WIDTH )
+            throw new IllegalArgumentException( "bad width: " + TARGET_WIDTH );
+        
+        /* Local Constants */
+        final int   KEEP   = WIDTH - TARGET_WIDTH;
+        final int[] SRC    = IM.getPixels();
+        final int   STRIDE = IM.getStride();
+        
+        /* Local Variables */
+        UWECImage out = new UWECImage( TARGET_WIDTH, HEIGHT );
+        int[]     dst = out.getPixels();
+        
+        /* Filter Pixels */
+        for ( int j = 0; j < HEIGHT; j++ )
+        {
+            int o = j * out.getStride();
+            for ( int i = 0; i < WIDTH; i++ )
+                if ( getStep( j * WIDTH + i ) >= KEEP )
+                    dst[o++] = SRC[j * STRIDE + i];
+        }
+        return out;
+    }
+    
+    /**
+     * Writes this index to a file.
+     * 
+     * @param filename
+     *      the file to write.
+     * @throws IOException
+     *      if the file cannot be written.
+     **/
+    public void write( String filename ) throws IOException
+    {
+        try ( RandomAccessFile f = new RandomAccessFile( filename, "rw" );
+              FileChannel ch = f.getChannel() )
+        {
+            ByteBuffer all = STEPS.duplicate();
+            all.clear();
+            ch.truncate( 0 );
+            while ( all.hasRemaining() )
+                ch.write( all );
+        }
+    }
+    
+    /**
+     * Returns the step at which pixel P (row-major) was removed.
+     **/
+    private int getStep( final int P )
+    {
+        return 2 == BYTES ? STEPS.getChar( HEADER + 2 * P ) :
+                            STEPS.getInt( HEADER + 4 * P );
+    }
+    
+    /**
+     * Sets the step at which pixel P (row-major) was removed.
+     **/
+    private void setStep( final int P, final int STEP )
+    {
+        if ( 2 == BYTES )
+            STEPS.putChar( HEADER + 2 * P, (char)STEP );
+        else
+            STEPS.putInt( HEADER + 4 * P, STEP );
+    }
+}
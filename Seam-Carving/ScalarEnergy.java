@@ -0,0 +1,234 @@
+/**
+ * Class holding the energy functions seams can be carved by,
+ * computed one pixel at a time.
+ * <p>
+ * Every function is a sum of squared RGB distances, scaled so
+ * that no pixel's energy exceeds twice that of GRADIENT.
+ **/
+
+public enum ScalarEnergy implements EnergyFunction
+{
+    /**
+     * The squared distance between a pixel's neighbors across
+     * the seam direction.
+     **/
+    GRADIENT( 0 )
+    {
+        @Override
+        public void energyRow( final int[]    PIXELS,
+                               final int      ACROSS,
+                               final int      ALONG,
+                               final SeamMaps maps,
+                               final int      J,
+                               final int      FROM,
+                               final int      TO )
+        {
+            /* Local Constants */
+            final int SPAN = maps.span;
+            final int ROW  = J * ALONG;
+            final int OUT  = J * maps.STRIDE;
+            
+            for ( int i = FROM; i < TO; i++ )
+                maps.ENERGY[OUT + i] =
+                    gradient( PIXELS[ROW + prev( i, SPAN ) * ACROSS],
+                              PIXELS[ROW + next( i, SPAN ) * ACROSS] );
+        }
+    },
+    
+    /**
+     * The squared distance between a pixel's neighbors across
+     * the seam direction plus that between its neighbors along
+     * it.
+     **/
+    DUAL_GRADIENT( 1 )
+    {
+        @Override
+        public void energyRow( final int[]    PIXELS,
+                               final int      ACROSS,
+                               final int      ALONG,
+                               final SeamMaps maps,
+                               final int      J,
+                               final int      FROM,
+                               final int      TO )
+        {
+            /* Local Constants */
+            final int SPAN = maps.span;
+            final int ROW  = J * ALONG;
+            final int UP   = prev( J, maps.LENGTH ) * ALONG;
+            final int DOWN = next( J, maps.LENGTH ) * ALONG;
+            final int OUT  = J * maps.STRIDE;
+            
+            for ( int i = FROM; i < TO; i++ )
+                maps.ENERGY[OUT + i] =
+                    gradient( PIXELS[ROW + prev( i, SPAN ) * ACROSS],
+                              PIXELS[ROW + next( i, SPAN ) * ACROSS] ) +
+                    gradient( PIXELS[UP   + i * ACROSS],
+                              PIXELS[DOWN + i * ACROSS] );
+        }
+    },
+    
+    /**
+     * The squared magnitude of the 3x3 Sobel gradient, summed
+     * over the channels and divided by 16.
+     **/
+    SOBEL( 1 )
+    {
+        @Override
+        public void energyRow( final int[]    PIXELS,
+                               final int      ACROSS,
+                               final int      ALONG,
+                               final SeamMaps maps,
+                               final int      J,
+                               final int      FROM,
+                               final int      TO )
+        {
+            /* Local Constants */
+            final int SPAN = maps.span;
+            final int ROW  = J * ALONG;
+            final int UP   = prev( J, maps.LENGTH ) * ALONG;
+            final int DOWN = next( J, maps.LENGTH ) * ALONG;
+            final int OUT  = J * maps.STRIDE;
+            
+            for ( int i = FROM; i < TO; i++ )
+            {
+                /* Block Variables */
+                int left  = prev( i, SPAN ) * ACROSS;
+                int mid   = i * ACROSS;
+                int right = next( i, SPAN ) * ACROSS;
+                int sum   = 0;
+                
+                for ( int shift = 0; shift < 24; shift += 8 )
+                {
+                    int ul = ( PIXELS[UP   + left]  >> shift ) & 255;
+                    int um = ( PIXELS[UP   + mid]   >> shift ) & 255;
+                    int ur = ( PIXELS[UP   + right] >> shift ) & 255;
+                    int ml = ( PIXELS[ROW  + left]  >> shift ) & 255;
+                    int mr = ( PIXELS[ROW  + right] >> shift ) & 255;
+                    int dl = ( PIXELS[DOWN + left]  >> shift ) & 255;
+                    int dm = ( PIXELS[DOWN + mid]   >> shift ) & 255;
+                    int dr = ( PIXELS[DOWN + right] >> shift ) & 255;
+                    
+                    int across = ur + 2 * mr + dr - ul - 2 * ml - dl;
+                    int along  = dl + 2 * dm + dr - ul - 2 * um - ur;
+                    sum += across * across + along * along;
+                }
+                maps.ENERGY[OUT + i] = sum >> 4;
+            }
+        }
+    },
+    
+    /**
+     * Forward energy: the squared distance between the neighbors
+     * that removing a pixel would join across the seam
+     * direction, with a diagonal step into the pixel also
+     * charged for the join it makes with the row above. A step
+     * from the left joins the pixel above to the left neighbor,
+     * and one from the right joins it to the right neighbor.
+     * The first row has no row above.
+     **/
+    FORWARD( 1 )
+    {
+        @Override
+        public void energyRow( final int[]    PIXELS,
+                               final int      ACROSS,
+                               final int      ALONG,
+                               final SeamMaps maps,
+                               final int      J,
+                               final int      FROM,
+                               final int      TO )
+        {
+            /* Local Constants */
+            final int SPAN = maps.span;
+            final int ROW  = J * ALONG;
+            final int UP   = ( J - 1 ) * ALONG;
+            final int OUT  = J * maps.STRIDE;
+            
+            maps.chargeSteps();
+            for ( int i = FROM; i < TO; i++ )
+            {
+                /* Block Variables */
+                int left  = PIXELS[ROW + prev( i, SPAN ) * ACROSS];
+                int right = PIXELS[ROW + next( i, SPAN ) * ACROSS];
+                
+                maps.ENERGY[OUT + i] = gradient( left, right );
+                if ( 0 < J )
+                {
+                    maps.stepLeft[OUT + i]  =
+                        gradient( PIXELS[UP + i * ACROSS], left );
+                    maps.stepRight[OUT + i] =
+                        gradient( PIXELS[UP + i * ACROSS], right );
+                }
+                else
+                {
+                    maps.stepLeft[OUT + i]  = 0;
+                    maps.stepRight[OUT + i] = 0;
+                }
+            }
+        }
+        
+        @Override
+        public boolean chargesSteps()
+        {
+            return true;
+        }
+    };
+    
+    /* Instance Constants */
+    private final int DEPTH;
+    
+    /*== Constructors ==*/
+    
+    private ScalarEnergy( final int DEPTH )
+    {
+        this.DEPTH = DEPTH;
+    }
+    
+    /*== Accessors ==*/
+    
+    @Override
+    public int getDepth()
+    {
+        return DEPTH;
+    }
+    
+    /**
+     * Returns the index before I in a row of N pixels,
+     * wrapping around.
+     **/
+    static int prev( final int I, final int N )
+    {
+        return ( 0 == I ? N : I ) - 1;
+    }
+    
+    /**
+     * Returns the index after I in a row of N pixels,
+     * wrapping around.
+     **/
+    static int next( final int I, final int N )
+    {
+        return N == I + 1 ? 0 : I + 1;
+    }
+    
+    /**
+     * Computes the squared RGB distance between two
+     * packed 0xRRGGBB pixels.
+     * 
+     * @param A
+     *      the first pixel.
+     * @param B
+     *      the second pixel.
+     * @return
+     *      the sum of the squared channel differences.
+     **/
+    static int gradient( final int A, final int B )
+    {
+        /* Local Constants */
+        final int DELTA_RED   = ( ( A >> 16 ) & 255 ) - ( ( B >> 16 ) & 255 );
+        final int DELTA_GREEN = ( ( A >>  8 ) & 255 ) - ( ( B >>  8 ) & 255 );
+        final int DELTA_BLUE  = ( A & 255 ) - ( B & 255 );
+        
+        return DELTA_RED   * DELTA_RED +
+               DELTA_GREEN * DELTA_GREEN +
+               DELTA_BLUE  * DELTA_BLUE;
+    }
+}
@@ -1,15 +1,82 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Class to handle image resizing by seam-carving.
  **/
 
 public class Seam
 {
+    /* Class Constants */
+    /**
+     * The packed color used to draw seams.
+     **/
+    private static final int RED = 0xFF0000;
+    /**
+     * The default sequential cutoff (in pixels).
+     **/
+    private static final int DEFAULT_CUTOFF = 1 << 15;
+    /**
+     * The default band radius for pyramid shrinking (in pixels).
+     **/
+    private static final int DEFAULT_BAND_RADIUS = 8;
+    /**
+     * The steps a seam can take from one row to the next,
+     * relative to the pixel in the row above.
+     **/
+    static final byte NW = -1;
+    static final byte N  =  0;
+    static final byte NE =  1;
+    /**
+     * The inner loop of the path weight pass, a pixel at a time.
+     **/
+    static final PathWeightKernel SCALAR_KERNEL = Seam::middleRow;
+    /**
+     * The inner loop of the path weight pass actually used:
+     * VectorPathWeights if it and the jdk.incubator.vector
+     * module are both there, otherwise SCALAR_KERNEL.
+     **/
+    static final PathWeightKernel KERNEL = loadKernel();
+    
     /* Instance Constants */
     /**
      * The time to wait after drawing a seam (in milliseconds).
      **/
     private final int WAIT;
     
+    /* Instance Variables */
+    /**
+     * The pool energy maps are computed on, or null to
+     * compute them on the calling thread.
+     **/
+    private ForkJoinPool pool;
+    /**
+     * The number of pixels below which work is not split
+     * across threads.
+     **/
+    private int cutoff;
+    /**
+     * Told about every seam removed, or null.
+     **/
+    private SeamListener listener;
+    /**
+     * The energy function seams are carved by.
+     **/
+    private EnergyFunction energy;
+    /**
+     * The pixels either side of the scaled-up coarse seam that
+     * pyramid shrinking searches on each finer level.
+     **/
+    private int bandRadius;
+    /**
+     * Where the time of each phase is recorded, or null.
+     **/
+    private SeamMetrics metrics;
+    /**
+     * Shown every seam removed, or null.
+     **/
+    private SeamDisplay display;
+    
     /*== Constructors ==*/
     
     /**
@@ -22,6 +89,7 @@ public class Seam
     
     /**
      * Constructs a Seam with a given wait time.
+     * Energy maps are computed on the common fork/join pool.
      * 
      * @param WAIT
      *      time (in ms) to wait after drawing a seam.
@@ -29,10 +97,138 @@ public class Seam
     public Seam( final int WAIT )
     {
         this.WAIT = WAIT;
+        this.cutoff = DEFAULT_CUTOFF;
+        this.pool   = 1 < ForkJoinPool.getCommonPoolParallelism() ?
+                      ForkJoinPool.commonPool() : null;
+        this.energy = Energies.get( Energies.DEFAULT );
+        this.bandRadius = DEFAULT_BAND_RADIUS;
+    }
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Sets the number of threads used to compute energy and
+     * path weight maps.
+     * A parallelism of 1 keeps all work on the calling thread.
+     * 
+     * @param PARALLELISM
+     *      the number of worker threads.
+     **/
+    public void setParallelism( final int PARALLELISM )
+    {
+        if ( 1 > PARALLELISM )
+            throw new IllegalArgumentException( "parallelism must be positive" );
+        
+        if ( null != pool && pool != ForkJoinPool.commonPool() )
+            pool.shutdown();
+        
+        if ( 1 == PARALLELISM )
+            pool = null;
+        else if ( PARALLELISM == ForkJoinPool.getCommonPoolParallelism() )
+            pool = ForkJoinPool.commonPool();
+        else
+            pool = new ForkJoinPool( PARALLELISM );
+    }
+    
+    /**
+     * Sets the number of pixels below which a map is computed
+     * sequentially. This is also the smallest energy stripe
+     * handed to a single worker.
+     * 
+     * @param CUTOFF
+     *      the sequential cutoff, in pixels.
+     **/
+    public void setSequentialCutoff( final int CUTOFF )
+    {
+        this.cutoff = CUTOFF;
+    }
+    
+    /**
+     * Sets an object to be told about every seam removed.
+     * 
+     * @param listener
+     *      the listener, or null for none.
+     **/
+    public void setSeamListener( final SeamListener listener )
+    {
+        this.listener = listener;
+    }
+    
+    /**
+     * Sets the energy function seams are carved by.
+     * 
+     * @param energy
+     *      the energy function.
+     * @see Energies#get
+     **/
+    public void setEnergyFunction( final EnergyFunction energy )
+    {
+        this.energy = energy;
+    }
+    
+    /**
+     * Sets how far pyramid shrinking searches either side of
+     * the seam found on the level above. A wider band finds
+     * cheaper seams more slowly.
+     * 
+     * @param RADIUS
+     *      the band radius, in pixels.
+     * @see #pyramidVSShrink
+     **/
+    public void setBandRadius( final int RADIUS )
+    {
+        if ( 0 > RADIUS )
+            throw new IllegalArgumentException(
+                "band radius must not be negative" );
+        
+        this.bandRadius = RADIUS;
+    }
+    
+    /**
+     * Sets where the time spent in each phase of a resize is
+     * recorded. The image being carved times its own repaints
+     * and transposes; see UWECImage.setMetrics.
+     * 
+     * @param metrics
+     *      the metrics, or null to time nothing.
+     **/
+    public void setMetrics( final SeamMetrics metrics )
+    {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Sets a display to offer the image to before every seam is
+     * removed, by any method. The seams drawn by
+     * verticalSeamShrink and horizontalSeamShrink then go to the
+     * display instead of the image's own window.
+     * 
+     * @param display
+     *      the display, or null for none.
+     **/
+    public void setDisplay( final SeamDisplay display )
+    {
+        this.display = display;
     }
     
     /*== Accessors ==*/
     
+    /**
+     * Returns the energy function seams are carved by.
+     **/
+    public EnergyFunction getEnergyFunction()
+    {
+        return energy;
+    }
+    
+    /**
+     * Returns the object told about every seam removed, or null.
+     **/
+    public SeamListener getSeamListener()
+    {
+        return listener;
+    }
+    
     /**
      * Shrinks a given image by removing a vertical seam.
      * 
@@ -42,24 +238,29 @@ public class Seam
     public void verticalSeamShrink( UWECImage im )
     {
         /* Local Variables */
-        int[][] energy      = getEnergy( im );
-        int[][] pathWeights = getPathWeights( energy );
-        int[]   seam        = getSeam( pathWeights );
+        long  allocated = allocated();
+        int[] seam      = getSeam( im, false );
         
         /* Draw Seam */
-        for ( int j = 0; j < im.getHeight(); j++ )
-            im.setRGB( seam[j], j, 255, 00, 00 );
-        im.repaintCurrentDisplayWindow();
+        if ( null == display )
+        {
+            int[] pixels = im.getPixels();
+            for ( int j = 0; j < im.getHeight(); j++ )
+                pixels[j * im.getStride() + seam[j]] = RED;
+            im.repaintCurrentDisplayWindow();
+        }
         try
         {
-            Thread.sleep( WAIT );
+            if ( 0 < WAIT )
+                Thread.sleep( WAIT );
         }
         catch ( Exception e )
         {}
         
         /* Remove Seam */
-        im.switchImage( im.shrinkImage( seam ) );
+        removeSeam( im, false, seam );
         im.repaintCurrentDisplayWindow();
+        recordSeams( 1, allocated );
     }
     
     /**
@@ -71,25 +272,29 @@ public class Seam
     public void horizontalSeamShrink( UWECImage im )
     {
         /* Local Variables */
-        UWECImage imT       = im.transpose();
-        int[][] energy      = getEnergy( imT );
-        int[][] pathWeights = getPathWeights( energy );
-        int[]   seam        = getSeam( pathWeights );
+        long  allocated = allocated();
+        int[] seam      = getSeam( im, true );
         
         /* Draw Seam */
-        for ( int i = 0; i < im.getWidth(); i++ )
-            im.setRGB( i, seam[i], 255, 00, 00 );
-        im.repaintCurrentDisplayWindow();
+        if ( null == display )
+        {
+            int[] pixels = im.getPixels();
+            for ( int i = 0; i < im.getWidth(); i++ )
+                pixels[seam[i] * im.getStride() + i] = RED;
+            im.repaintCurrentDisplayWindow();
+        }
         try
         {
-            Thread.sleep( WAIT );
+            if ( 0 < WAIT )
+                Thread.sleep( WAIT );
         }
         catch ( Exception e )
         {}
         
         /* Remove Seam */
-        im.switchImage( imT.shrinkImage( seam ).transpose() );
+        removeSeam( im, true, seam );
         im.repaintCurrentDisplayWindow();
+        recordSeams( 1, allocated );
     }
     
     /**
@@ -104,36 +309,45 @@ public class Seam
      *      the image.
      * @param DEC_WIDTH
      *      the number of vertical seams to remove.
+     * @return
+     *      the total energy of the removed seams.
      **/
-    public void fastVSShrink( UWECImage im, final int DEC_WIDTH )
+    public long fastVSShrink( UWECImage im, final int DEC_WIDTH )
     {
         /* Local Variables */
-        int[][] energy      = null;
-        int[][] pathWeights = null;
-        int[]   seam        = null;
+        SeamMaps maps      = null;
+        int[]    seam      = null;
+        long     cost      = 0;
+        long     allocated = allocated();
         
         /* Run initial calculations */
         if ( 0 < DEC_WIDTH )
         {
-            energy      = getEnergy( im );
-            pathWeights = getPathWeights( energy );
-            seam        = getSeam( pathWeights );
+            maps = new SeamMaps( im.getWidth(), im.getHeight(), false );
+            getEnergy( im, false, maps );
+            getPathWeights( maps );
+            seam = getSeam( maps );
+            cost += getCost( maps, seam );
             
             /* Remove Seam */
-            im.switchImage( im.shrinkImage( seam ) );
+            removeSeam( im, false, seam );
         }
         
         /* Run optimized calculations */
         for ( int i = 1; i < DEC_WIDTH; i++ )
         {
-            energy      = getEnergy( im, energy, seam );
-            pathWeights = getPathWeights( energy, pathWeights, seam );
-            seam        = getSeam( pathWeights );
+            getEnergy( im, false, maps, seam );
+            getPathWeights( maps, seam );
+            seam = getSeam( maps );
+            cost += getCost( maps, seam );
             
             /* Remove Seam */
-            im.switchImage( im.shrinkImage( seam ) );
+            removeSeam( im, false, seam );
         }
+        im.compact();
         im.repaintCurrentDisplayWindow();
+        recordSeams( DEC_WIDTH, allocated );
+        return cost;
     }
     
     /**
@@ -148,303 +362,1157 @@ public class Seam
      *      the image.
      * @param DEC_HEIGHT
      *      the number of horizontal seams to remove.
+     * @return
+     *      the total energy of the removed seams.
      **/
-    public void fastHSShrink( UWECImage im, final int DEC_HEIGHT )
+    public long fastHSShrink( UWECImage im, final int DEC_HEIGHT )
     {
         /* Local Variables */
-        UWECImage imT = im.transpose();
-        int[][] energy      = null;
-        int[][] pathWeights = null;
-        int[]   seam        = null;
+        SeamMaps maps      = null;
+        int[]    seam      = null;
+        long     cost      = 0;
+        long     allocated = allocated();
         
         /* Run initial calculations */
         if ( 0 < DEC_HEIGHT )
         {
-            energy      = getEnergy( imT );
-            pathWeights = getPathWeights( energy );
-            seam        = getSeam( pathWeights );
+            maps = new SeamMaps( im.getHeight(), im.getWidth(), false );
+            getEnergy( im, true, maps );
+            getPathWeights( maps );
+            seam = getSeam( maps );
+            cost += getCost( maps, seam );
             
             /* Remove Seam */
-            imT.switchImage( imT.shrinkImage( seam ) );
+            removeSeam( im, true, seam );
         }
         
         /* Run optimized calculations */
         for ( int i = 1; i < DEC_HEIGHT; i++ )
         {
-            energy      = getEnergy( imT, energy, seam );
-            pathWeights = getPathWeights( energy, pathWeights, seam );
-            seam        = getSeam( pathWeights );
+            getEnergy( im, true, maps, seam );
+            getPathWeights( maps, seam );
+            seam = getSeam( maps );
+            cost += getCost( maps, seam );
             
             /* Remove Seam */
-            imT.switchImage( imT.shrinkImage( seam ) );
+            removeSeam( im, true, seam );
         }
-        im.switchImage( imT.transpose() );
+        im.compact();
         im.repaintCurrentDisplayWindow();
+        recordSeams( DEC_HEIGHT, allocated );
+        return cost;
     }
     
     /**
-     * Creates an energy map for a given image.
-     * Energy is computed using a dual-gradient energy function.
+     * Shrinks a given image by removing a given number of
+     * vertical seams, each found coarse to fine on a pyramid
+     * of halved copies of the image.
+     * <p>
+     * Only the coarsest copy gets a full DP pass; each finer
+     * level, the image included, is searched only within the
+     * band radius of the seam found on the level above. This
+     * trades some quality for speed on large images.
      * 
-     * @param IM
-     *      the given image.
+     * @param im
+     *      the image.
+     * @param DEC_WIDTH
+     *      the number of vertical seams to remove.
      * @return
-     *      the energy map.
+     *      the total energy of the removed seams.
+     * @see #setBandRadius
      **/
-    private int[][] getEnergy( final UWECImage IM )
+    public long pyramidVSShrink( UWECImage im, final int DEC_WIDTH )
     {
-        /* Local Constants */
-        final int HEIGHT = IM.getHeight();
-        final int WIDTH  = IM.getWidth();
+        return pyramidShrink( im, false, DEC_WIDTH );
+    }
+    
+    /**
+     * Shrinks a given image by removing a given number of
+     * horizontal seams, each found coarse to fine.
+     * 
+     * @param im
+     *      the image.
+     * @param DEC_HEIGHT
+     *      the number of horizontal seams to remove.
+     * @return
+     *      the total energy of the removed seams.
+     * @see #pyramidVSShrink
+     **/
+    public long pyramidHSShrink( UWECImage im, final int DEC_HEIGHT )
+    {
+        return pyramidShrink( im, true, DEC_HEIGHT );
+    }
+    
+    /**
+     * Removes seams from a given image one at a time, finding
+     * each on a SeamPyramid.
+     * 
+     * @param im
+     *      the image.
+     * @param HORIZONTAL
+     *      whether to remove horizontal seams.
+     * @param COUNT
+     *      the number of seams to remove.
+     * @return
+     *      the total energy of the removed seams.
+     **/
+    private long pyramidShrink( UWECImage     im,
+                                final boolean HORIZONTAL,
+                                final int     COUNT )
+    {
+        /* Local Variables */
+        SeamPyramid pyramid   = null;
+        long        cost      = 0;
+        long        allocated = allocated();
+        
+        /* Remove Seams */
+        if ( 0 < COUNT )
+            pyramid = new SeamPyramid( im, HORIZONTAL, energy, bandRadius );
+        for ( int i = 0; i < COUNT; i++ )
+        {
+            /* Block Variables */
+            long       start = start();
+            PhaseEvent event = begin();
+            int[]      seam  = pyramid.findSeam();
+            
+            record( SeamMetrics.Phase.SEARCH, start, event,
+                    (long)im.getWidth() * im.getHeight() );
+            removeSeam( im, HORIZONTAL, seam );
+            cost += pyramid.getCost();
+            pyramid.seamRemoved();
+        }
+        im.compact();
+        im.repaintCurrentDisplayWindow();
+        recordSeams( COUNT, allocated );
+        return cost;
+    }
+    
+    /**
+     * Shrinks a given image by removing a given number of
+     * vertical seams, taking several pixel-disjoint seams
+     * from each DP pass.
+     * <p>
+     * This trades some quality for throughput: seams after the
+     * first in a pass are chosen without seeing the effect of
+     * removing the others. With SEAMS_PER_PASS of 1 the result
+     * matches fastVSShrink.
+     * 
+     * @param im
+     *      the image.
+     * @param DEC_WIDTH
+     *      the number of vertical seams to remove.
+     * @param SEAMS_PER_PASS
+     *      the most seams to take from one pass.
+     * @return
+     *      the total energy of the removed seams.
+     **/
+    public long batchVSShrink( UWECImage im,
+                               final int DEC_WIDTH,
+                               final int SEAMS_PER_PASS )
+    {
+        return batchShrink( im, false, DEC_WIDTH, SEAMS_PER_PASS );
+    }
+    
+    /**
+     * Shrinks a given image by removing a given number of
+     * horizontal seams, taking several pixel-disjoint seams
+     * from each DP pass.
+     * 
+     * @param im
+     *      the image.
+     * @param DEC_HEIGHT
+     *      the number of horizontal seams to remove.
+     * @param SEAMS_PER_PASS
+     *      the most seams to take from one pass.
+     * @return
+     *      the total energy of the removed seams.
+     * @see #batchVSShrink
+     **/
+    public long batchHSShrink( UWECImage im,
+                               final int DEC_HEIGHT,
+                               final int SEAMS_PER_PASS )
+    {
+        return batchShrink( im, true, DEC_HEIGHT, SEAMS_PER_PASS );
+    }
+    
+    /**
+     * Removes seams from a given image in batches: one energy
+     * and DP pass, then up to SEAMS_PER_PASS disjoint seams
+     * traced from it and removed in one compaction sweep.
+     * 
+     * @param im
+     *      the image.
+     * @param HORIZONTAL
+     *      whether to remove horizontal seams.
+     * @param COUNT
+     *      the number of seams to remove.
+     * @param SEAMS_PER_PASS
+     *      the most seams to take from one pass.
+     * @return
+     *      the total energy of the removed seams.
+     **/
+    private long batchShrink( UWECImage     im,
+                              final boolean HORIZONTAL,
+                              final int     COUNT,
+                              final int     SEAMS_PER_PASS )
+    {
+        if ( 1 > SEAMS_PER_PASS )
+            throw new IllegalArgumentException(
+                "seams per pass must be positive" );
         
         /* Local Variables */
-        int[][] energy = new int[WIDTH][HEIGHT];
+        SeamMaps maps    = null;
+        int[]    claimed = null;
+        int[][]  seams;
+        long     cost      = 0;
+        long     allocated = allocated();
         
-        /* Generate Energy Map */
-        for ( int i = 0; i < WIDTH; i++ )
-            for ( int j = 0; j < HEIGHT; j++ )
+        /* Remove Seams */
+        for ( int removed = 0, pass = 1; removed < COUNT; pass++ )
+        {
+            if ( null == maps )
             {
-                /* Block Variables */
-                int deltaRed;
-                int deltaGreen;
-                int deltaBlue;
-                
-                int prevI = ( i + WIDTH - 1 ) % WIDTH;
-                int nextI = ( i + 1 ) % WIDTH;
-                
-                /* Analyze Image */
-                deltaRed   = IM.getRed(   prevI, j ) - IM.getRed(   nextI, j );
-                deltaGreen = IM.getGreen( prevI, j ) - IM.getGreen( nextI, j );
-                deltaBlue  = IM.getBlue(  prevI, j ) - IM.getBlue(  nextI, j );
-                
-                energy[i][j] = deltaRed   * deltaRed +
-                               deltaGreen * deltaGreen +
-                               deltaBlue  * deltaBlue;
+                maps = HORIZONTAL ?
+                       new SeamMaps( im.getHeight(), im.getWidth(), true ) :
+                       new SeamMaps( im.getWidth(), im.getHeight(), true );
+                claimed = new int[maps.DIRS.length];
             }
-        return energy;
+            getEnergy( im, HORIZONTAL, maps );
+            getPathWeights( maps );
+            seams = getSeams( maps,
+                              Math.min( SEAMS_PER_PASS, COUNT - removed ),
+                              claimed, pass );
+            
+            for ( int[] seam : seams )
+                cost += getCost( maps, seam );
+            removeSeams( im, HORIZONTAL, seams );
+            removed += seams.length;
+        }
+        im.compact();
+        im.repaintCurrentDisplayWindow();
+        recordSeams( COUNT, allocated );
+        return cost;
+    }
+    
+    /**
+     * Widens a given image by inserting a given number of
+     * vertical seams.
+     * <p>
+     * The seams to duplicate are the cheapest pixel-disjoint
+     * seams of a single DP pass, all inserted in one sweep;
+     * another pass is only made if that pass could not supply
+     * enough of them. Each inserted pixel averages the seam
+     * pixel with its right neighbor.
+     * 
+     * @param im
+     *      the image.
+     * @param INC_WIDTH
+     *      the number of vertical seams to insert.
+     * @return
+     *      the total energy of the duplicated seams.
+     **/
+    public long batchVSGrow( UWECImage im, final int INC_WIDTH )
+    {
+        return batchGrow( im, false, INC_WIDTH );
+    }
+    
+    /**
+     * Heightens a given image by inserting a given number of
+     * horizontal seams.
+     * 
+     * @param im
+     *      the image.
+     * @param INC_HEIGHT
+     *      the number of horizontal seams to insert.
+     * @return
+     *      the total energy of the duplicated seams.
+     * @see #batchVSGrow
+     **/
+    public long batchHSGrow( UWECImage im, final int INC_HEIGHT )
+    {
+        return batchGrow( im, true, INC_HEIGHT );
+    }
+    
+    /**
+     * Inserts seams into a given image in batches: one energy
+     * and DP pass, then as many of the remaining seams as can
+     * be traced disjointly from it, inserted in one sweep.
+     * 
+     * @param im
+     *      the image.
+     * @param HORIZONTAL
+     *      whether to insert horizontal seams.
+     * @param COUNT
+     *      the number of seams to insert.
+     * @return
+     *      the total energy of the duplicated seams.
+     **/
+    private long batchGrow( UWECImage     im,
+                            final boolean HORIZONTAL,
+                            final int     COUNT )
+    {
+        /* Local Variables */
+        SeamMaps   maps;
+        int[][]    seams;
+        long       cost      = 0;
+        long       allocated = allocated();
+        long       start;
+        PhaseEvent event;
+        
+        /* Insert Seams */
+        for ( int inserted = 0; inserted < COUNT; inserted += seams.length )
+        {
+            maps = HORIZONTAL ?
+                   new SeamMaps( im.getHeight(), im.getWidth(), true ) :
+                   new SeamMaps( im.getWidth(), im.getHeight(), true );
+            getEnergy( im, HORIZONTAL, maps );
+            getPathWeights( maps );
+            seams = getSeams( maps, COUNT - inserted,
+                              new int[maps.DIRS.length], 1 );
+            
+            for ( int[] seam : seams )
+                cost += getCost( maps, seam );
+            start = start();
+            event = begin();
+            if ( HORIZONTAL )
+                im.insertHorizontalSeams( seams );
+            else
+                im.insertVerticalSeams( seams );
+            record( SeamMetrics.Phase.SHRINK, start, event,
+                    (long)im.getWidth() * im.getHeight() );
+            offer( im, HORIZONTAL, null );
+        }
+        im.repaintCurrentDisplayWindow();
+        recordSeams( COUNT, allocated );
+        return cost;
+    }
+    
+    /**
+     * Removes a seam from a given image and tells the listener.
+     * 
+     * @param im
+     *      the image.
+     * @param HORIZONTAL
+     *      whether the seam is horizontal.
+     * @param SEAM
+     *      the seam.
+     **/
+    private void removeSeam( UWECImage     im,
+                             final boolean HORIZONTAL,
+                             final int[]   SEAM )
+    {
+        if ( null != display )
+            offer( im, HORIZONTAL, new int[][] { SEAM } );
+        
+        /* Local Constants */
+        final long       START = start();
+        final PhaseEvent EVENT = begin();
+        
+        if ( HORIZONTAL )
+            im.removeHorizontalSeam( SEAM );
+        else
+            im.removeVerticalSeam( SEAM );
+        record( SeamMetrics.Phase.SHRINK, START, EVENT,
+                (long)im.getWidth() * im.getHeight() );
+        
+        if ( null != listener )
+            listener.seamsRemoved( new int[][] { SEAM }, HORIZONTAL );
+    }
+    
+    /**
+     * Removes pixel-disjoint seams from a given image in one
+     * sweep and tells the listener.
+     * 
+     * @param im
+     *      the image.
+     * @param HORIZONTAL
+     *      whether the seams are horizontal.
+     * @param SEAMS
+     *      the seams.
+     **/
+    private void removeSeams( UWECImage     im,
+                              final boolean HORIZONTAL,
+                              final int[][] SEAMS )
+    {
+        offer( im, HORIZONTAL, SEAMS );
+        
+        /* Local Constants */
+        final long       START = start();
+        final PhaseEvent EVENT = begin();
+        
+        if ( HORIZONTAL )
+            im.removeHorizontalSeams( SEAMS );
+        else
+            im.removeVerticalSeams( SEAMS );
+        record( SeamMetrics.Phase.SHRINK, START, EVENT,
+                (long)im.getWidth() * im.getHeight() );
+        
+        if ( null != listener )
+            listener.seamsRemoved( SEAMS, HORIZONTAL );
     }
     
     /**
-     * Creates an energy map for a given image based on a
-     * previous energy map and the removed seam.
-     * Energy is computed using a dual-gradient energy function.
+     * Offers a given image to the display, if there is one,
+     * timing it as a repaint if the display takes it.
+     * 
+     * @param IM
+     *      the image.
+     * @param HORIZONTAL
+     *      whether the seams are horizontal.
+     * @param SEAMS
+     *      the seams about to be removed, or null.
+     **/
+    private void offer( final UWECImage IM,
+                        final boolean   HORIZONTAL,
+                        final int[][]   SEAMS )
+    {
+        /* Local Constants */
+        final long       START = start();
+        final PhaseEvent EVENT = null == display ? null : begin();
+        
+        if ( null != display && display.offer( IM, SEAMS, HORIZONTAL ) )
+            record( SeamMetrics.Phase.REPAINT, START, EVENT,
+                    (long)IM.getWidth() * IM.getHeight() );
+    }
+    
+    /**
+     * Finds the minimum seam of a given image without keeping
+     * its path weight map. Only two rows of weights are live
+     * at a time; the seam is traced from the recorded
+     * directions.
      * 
      * @param IM
      *      the given image.
-     * @param LAST_ENERGY
-     *      the previous energy map.
-     * @param LAST_SEAM
-     *      the last seam removed.
+     * @param HORIZONTAL
+     *      whether to find a horizontal seam.
      * @return
-     *      the energy map.
+     *      the minimum path.
+     **/
+    private int[] getSeam( final UWECImage IM, final boolean HORIZONTAL )
+    {
+        /* Local Variables */
+        SeamMaps maps = HORIZONTAL ?
+                        new SeamMaps( IM.getHeight(), IM.getWidth(), true ) :
+                        new SeamMaps( IM.getWidth(), IM.getHeight(), true );
+        
+        /* Find Seam */
+        getEnergy( IM, HORIZONTAL, maps );
+        getPathWeights( maps );
+        return getSeam( maps );
+    }
+    
+    /**
+     * Fills the energy map for a given image.
+     * 
+     * @param IM
+     *      the given image.
+     * @param HORIZONTAL
+     *      whether the maps are for horizontal seams.
+     * @param maps
+     *      the maps to fill.
      **/
-    private int[][] getEnergy( final UWECImage IM,
-                               final int[][]   LAST_ENERGY,
-                               final int[]     LAST_SEAM )
+    private void getEnergy( final UWECImage IM,
+                            final boolean   HORIZONTAL,
+                            final SeamMaps  maps )
+    {
+        getEnergy( IM, HORIZONTAL, maps, null );
+    }
+    
+    /**
+     * Updates the energy map for a given image in place after
+     * a seam has been removed from it.
+     * 
+     * @param IM
+     *      the given image.
+     * @param HORIZONTAL
+     *      whether the maps are for horizontal seams.
+     * @param maps
+     *      the maps holding the previous energy map.
+     * @param LAST_SEAM
+     *      the last seam removed, or null to compute every pixel.
+     **/
+    void getEnergy( final UWECImage IM,
+                    final boolean   HORIZONTAL,
+                    final SeamMaps  maps,
+                    final int[]     LAST_SEAM )
     {
         /* Local Constants */
-        final int HEIGHT = IM.getHeight();
-        final int WIDTH  = IM.getWidth();
+        final int SPAN   = HORIZONTAL ? IM.getHeight() : IM.getWidth();
+        final int LENGTH = HORIZONTAL ? IM.getWidth()  : IM.getHeight();
+        
+        final int ACROSS = HORIZONTAL ? IM.getStride() : 1;
+        final int ALONG  = HORIZONTAL ? 1 : IM.getStride();
+        
+        final boolean FULL = null == LAST_SEAM ||
+                             touchesEdge( LAST_SEAM, SPAN );
+        
+        final long       START = start();
+        final PhaseEvent EVENT = begin();
         
         /* Local Variables */
-        int[][] energy = new int[WIDTH][HEIGHT];
+        EnergyTask task = new EnergyTask( energy, IM.getPixels(), ACROSS,
+                                          ALONG, maps,
+                                          FULL ? null : LAST_SEAM,
+                                          0, LENGTH, cutoff );
         
         /* Generate Energy Map */
-        for ( int j = 0; j < HEIGHT; j++ )
+        maps.span = SPAN;
+        if ( null == pool || (long)SPAN * LENGTH < cutoff )
+            task.compute();
+        else
+            pool.invoke( task );
+        record( SeamMetrics.Phase.ENERGY, START, EVENT, (long)SPAN * LENGTH );
+    }
+    
+    /**
+     * Fills rows [FROM, TO) of an energy map.
+     * A row runs across the seam direction; pixel (i, j) of the
+     * map is PIXELS[i * ACROSS + j * ALONG].
+     * 
+     * @param FUNCTION
+     *      the energy function.
+     * @param PIXELS
+     *      the packed image pixels.
+     * @param ACROSS
+     *      the pixel step between neighbors across a seam.
+     * @param ALONG
+     *      the pixel step between neighbors along a seam.
+     * @param maps
+     *      the maps whose energy is filled.
+     * @param FROM
+     *      the first row to fill.
+     * @param TO
+     *      one past the last row to fill.
+     **/
+    static void energyRows( final EnergyFunction FUNCTION,
+                            final int[]          PIXELS,
+                            final int            ACROSS,
+                            final int            ALONG,
+                            final SeamMaps       maps,
+                            final int            FROM,
+                            final int            TO )
+    {
+        for ( int j = FROM; j < TO; j++ )
+            FUNCTION.energyRow( PIXELS, ACROSS, ALONG, maps, j,
+                                0, maps.span );
+    }
+    
+    /**
+     * Updates rows [FROM, TO) of an energy map in place after
+     * a seam has been removed. Each row is shifted left over
+     * the removed pixel and only the pixels whose neighborhood
+     * the seam passed through are recomputed: those next to
+     * where it crossed this row, and the rows either side if
+     * the energy function looks at them.
+     * <p>
+     * The seam must not touch either edge.
+     * 
+     * @param FUNCTION
+     *      the energy function.
+     * @param PIXELS
+     *      the packed image pixels.
+     * @param ACROSS
+     *      the pixel step between neighbors across a seam.
+     * @param ALONG
+     *      the pixel step between neighbors along a seam.
+     * @param maps
+     *      the maps holding the previous energy map.
+     * @param LAST_SEAM
+     *      the last seam removed.
+     * @param FROM
+     *      the first row to fill.
+     * @param TO
+     *      one past the last row to fill.
+     **/
+    static void energyRows( final EnergyFunction FUNCTION,
+                            final int[]          PIXELS,
+                            final int            ACROSS,
+                            final int            ALONG,
+                            final SeamMaps       maps,
+                            final int[]          LAST_SEAM,
+                            final int            FROM,
+                            final int            TO )
+    {
+        /* Local Constants */
+        final int   SPAN   = maps.span;
+        final int   LENGTH = maps.LENGTH;
+        final int   DEPTH  = FUNCTION.getDepth();
+        final int[] ENERGY = maps.ENERGY;
+        
+        for ( int j = FROM; j < TO; j++ )
         {
-            /* Copy Values from Old Map */
-            for ( int i = 0; i < LAST_SEAM[0]-j-1; i++ )
-                energy[i][j] = LAST_ENERGY[i][j];
+            /* Block Variables */
+            int out   = j * maps.STRIDE;
+            int start = LAST_SEAM[j];
+            int end   = LAST_SEAM[j];
             
-            for ( int i = LAST_SEAM[0]+j+1; i < WIDTH; i++ )
-                energy[i][j] = LAST_ENERGY[i+1][j];
+            /* Find the Pixels the Seam Passed Near */
+            for ( int r = j - DEPTH; r <= j + DEPTH; r++ )
+            {
+                int cut = LAST_SEAM[( r + LENGTH ) % LENGTH];
+                start = Math.min( start, cut );
+                end   = Math.max( end, cut );
+            }
+            start = Math.max( start - 1, 0 );
+            end   = Math.min( end + 1, SPAN );
             
-            /* Generate New Values */
-            for ( int i = LAST_SEAM[0]-j-1; i <= LAST_SEAM[0]+j &&
-                                            i < WIDTH; i++ )
+            /* Close the Gap */
+            System.arraycopy( ENERGY, out + end + 1,
+                              ENERGY, out + end, SPAN - end );
+            if ( FUNCTION.chargesSteps() )
             {
-                if ( i < 0 )
-                    i = 0;
-                /* Block Variables */
-                int deltaRed;
-                int deltaGreen;
-                int deltaBlue;
-                
-                int prevI = ( i + WIDTH - 1 ) % WIDTH;
-                int nextI = ( i + 1 ) % WIDTH;
-                
-                /* Analyze Image */
-                deltaRed   = IM.getRed(   prevI, j ) - IM.getRed(   nextI, j );
-                deltaGreen = IM.getGreen( prevI, j ) - IM.getGreen( nextI, j );
-                deltaBlue  = IM.getBlue(  prevI, j ) - IM.getBlue(  nextI, j );
-                
-                energy[i][j] = deltaRed   * deltaRed +
-                               deltaGreen * deltaGreen +
-                               deltaBlue  * deltaBlue;
+                System.arraycopy( maps.stepLeft, out + end + 1,
+                                  maps.stepLeft, out + end, SPAN - end );
+                System.arraycopy( maps.stepRight, out + end + 1,
+                                  maps.stepRight, out + end, SPAN - end );
             }
+            
+            /* Generate New Values */
+            FUNCTION.energyRow( PIXELS, ACROSS, ALONG, maps, j, start, end );
         }
-        return energy;
     }
     
     /**
-     * Creates a map of the minimum energy required to
-     * get to every pixel of a given energy map.
+     * Checks whether a removed seam ran along either edge.
+     * Energy wraps around at the edges, so such a seam also
+     * disturbs the opposite edge and the maps must be rebuilt.
      * 
-     * @param ENERGY
-     *      the image's energy map.
+     * @param SEAM
+     *      the removed seam.
+     * @param SPAN
+     *      the number of pixels across, after removal.
      * @return
-     *      the path weight map.
+     *      whether any pixel of SEAM was on an edge.
+     **/
+    private static boolean touchesEdge( final int[] SEAM, final int SPAN )
+    {
+        for ( int i : SEAM )
+            if ( 0 == i || SPAN == i )
+                return true;
+        return false;
+    }
+    
+    /**
+     * Fills the map of the minimum energy required to get to
+     * every pixel of an energy map, along with the step taken
+     * into every pixel. This runs serially or as a parallel
+     * wavefront depending on the map's size.
+     * 
+     * @param maps
+     *      the maps to fill.
      **/
-    private int[][] getPathWeights( final int[][] ENERGY )
+    void getPathWeights( final SeamMaps maps )
     {
         /* Local Constants */
-        final int HEIGHT = ENERGY[0].length;
-        final int WIDTH  = ENERGY.length;
-        
-        /* Local Variables */
-        int[][] pathWeight = new int[WIDTH][HEIGHT];
+        final int        WIDTH  = maps.span;
+        final int        HEIGHT = maps.LENGTH;
+        final int        CHUNKS = null == pool ? 1 :
+                                  Math.min( pool.getParallelism(),
+                                            WIDTH / PathWeightsTask.MIN_CHUNK );
+        final long       START  = start();
+        final PhaseEvent EVENT  = begin();
         
         /* Calculate Minimum Energy Paths */
-        for ( int i = 0; i < WIDTH; i++ )
-            pathWeight[i][0] = ENERGY[i][0];
-        
-        for ( int j = 1; j < HEIGHT; j++ )
+        if ( 1 < CHUNKS && (long)WIDTH * HEIGHT >= cutoff )
+            pool.invoke( new PathWeightsTask( maps, CHUNKS ) );
+        else
         {
-            /*
-             * Calculate Side Path Weights
-             * (special case)
-             */
-            pathWeight[0][j]       = pathWeight[0][j-1] < pathWeight[1][j-1] ?
-                                     pathWeight[0][j-1] : pathWeight[1][j-1];
-            pathWeight[WIDTH-1][j] = pathWeight[WIDTH-1][j-1] <
-                                     pathWeight[WIDTH-2][j-1] ?
-                                     pathWeight[WIDTH-1][j-1] :
-                                     pathWeight[WIDTH-2][j-1];
-            pathWeight[0][j] += ENERGY[0][j];
-            pathWeight[WIDTH-1][j] += ENERGY[WIDTH-1][j];
-            
-            /* Calculate Middle Path Weights */
-            for ( int i = 1; i < WIDTH-1; i++ )
-            {
-                /* Block Variables */
-                int weightNW = 0;
-                int weightN  = 0;
-                int weightNE = 0;
-                
-                /* Calculate Weights */
-                weightN  = pathWeight[i][j-1];
-                weightNW = pathWeight[i-1][j-1];
-                weightNE = pathWeight[i+1][j-1];
-                
-                pathWeight[i][j] = weightN < weightNW ? weightN : weightNW;
-                pathWeight[i][j] = pathWeight[i][j] > weightNE ?
-                                   weightNE : pathWeight[i][j];
-                pathWeight[i][j] += ENERGY[i][j];
-            }
+            System.arraycopy( maps.ENERGY, 0, maps.PATH_WEIGHTS, 0, WIDTH );
+            for ( int j = 1; j < HEIGHT; j++ )
+                pathWeightRow( maps, j, maps.weightRow( j-1 ),
+                               maps.weightRow( j ), 0, WIDTH );
         }
-        return pathWeight;
+        record( SeamMetrics.Phase.PATH_WEIGHTS, START, EVENT,
+                (long)WIDTH * HEIGHT );
     }
     
     /**
-     * Creates a map of the minimum energy required to
-     * get to every pixel of a given image based on the
-     * previous path weight map and the removed seam.
+     * Updates the path weight and direction maps in place after
+     * a seam has been removed, based on the previous maps.
+     * <p>
+     * Each row is recomputed only over its dirty interval: the
+     * pixels next to the removed seam, whose energy or whose
+     * neighbors above changed (reaching as many rows either
+     * side as the energy function does), plus one pixel either
+     * side of the pixels whose weight changed in the row above. After
+     * a row is recomputed its changed interval is narrowed to
+     * the pixels whose weight really differs from the shifted
+     * old value, so once the new weights settle back onto the
+     * old ones the interval shrinks back to the seam. The rest
+     * of each row is shifted over the removed pixel.
      * 
-     * @param ENERGY
-     *      the image's energy map.
-     * @param LAST_PATHS
-     *      the previous path weight map.
+     * @param maps
+     *      the maps holding the previous path weights, with the
+     *      energy map already updated.
      * @param LAST_SEAM
      *      the last seam removed.
-     * @return
-     *      the path weight map.
      **/
-    private int[][] getPathWeights( final int[][] ENERGY,
-                                    final int[][] LAST_PATHS,
-                                    final int[]   LAST_SEAM )
+    void getPathWeights( final SeamMaps maps, final int[] LAST_SEAM )
     {
         /* Local Constants */
-        final int HEIGHT = ENERGY[0].length;
-        final int WIDTH  = ENERGY.length;
+        final int        WIDTH        = maps.span;
+        final int        HEIGHT       = maps.LENGTH;
+        final int        STRIDE       = maps.STRIDE;
+        final int[]      PATH_WEIGHTS = maps.PATH_WEIGHTS;
+        final byte[]     DIRS         = maps.DIRS;
+        final int[]      OLD          = maps.SPARE_ROW;
+        final int        DEPTH        = energy.getDepth();
+        final long       START        = start();
+        final PhaseEvent EVENT        = begin();
         
         /* Local Variables */
-        int[][] pathWeights = new int[WIDTH][HEIGHT];
-        int start;
-        int end;
-
+        int changedFrom = 0;
+        int changedTo   = 0;
+        
+        if ( touchesEdge( LAST_SEAM, WIDTH ) )
+        {
+            getPathWeights( maps );
+            return;
+        }
+        
         /* Calculate Minimum Energy Paths */
         for ( int j = 0; j < HEIGHT; j++ )
         {
-            start = LAST_SEAM[0]-j;
-            end = LAST_SEAM[0]+j;
-            if ( end > WIDTH )
-                end = WIDTH;
+            /* Block Variables */
+            int row   = j * STRIDE;
+            int cut   = LAST_SEAM[j];
+            int start = cut;
+            int end   = cut;
+            
+            /* Find the Dirty Interval */
+            for ( int r = j - Math.max( DEPTH, 1 ); r <= j + DEPTH; r++ )
+                if ( 0 <= r || 0 < DEPTH )
+                {
+                    int near = LAST_SEAM[( r + HEIGHT ) % HEIGHT];
+                    start = Math.min( start, near );
+                    end   = Math.max( end, near );
+                }
+            start--;
+            end++;
+            if ( changedFrom < changedTo )
+            {
+                start = Math.min( start, changedFrom - 1 );
+                end   = Math.max( end, changedTo + 1 );
+            }
             if ( start < 0 )
                 start = 0;
+            if ( end > WIDTH )
+                end = WIDTH;
             
-            /* Copy Values from Old Map */
-            for ( int i = 0; i < start; i++ )
-                pathWeights[i][j] = LAST_PATHS[i][j];
-            
-            for ( int i = end; i < WIDTH; i++ )
-                pathWeights[i][j] = LAST_PATHS[i+1][j];
+            /* Keep the Old Values, Shift Values Right of It */
+            System.arraycopy( PATH_WEIGHTS, row + start,
+                              OLD, start, end + 1 - start );
+            System.arraycopy( PATH_WEIGHTS, row + end + 1,
+                              PATH_WEIGHTS, row + end, WIDTH - end );
+            System.arraycopy( DIRS, row + end + 1,
+                              DIRS, row + end, WIDTH - end );
             
             /* Calculate New Values */
-            for ( int i = start; i < end; i++ )
+            if ( 0 == j )
+                System.arraycopy( maps.ENERGY, start,
+                                  PATH_WEIGHTS, start, end - start );
+            else
+                pathWeightRow( maps, j, row - STRIDE, row, start, end );
+            
+            /* Narrow to the Values That Changed */
+            changedFrom = start;
+            while ( changedFrom < end &&
+                    PATH_WEIGHTS[row + changedFrom] ==
+                    OLD[changedFrom < cut ? changedFrom : changedFrom + 1] )
+                changedFrom++;
+            changedTo = end;
+            while ( changedTo > changedFrom &&
+                    PATH_WEIGHTS[row + changedTo-1] ==
+                    OLD[changedTo-1 < cut ? changedTo-1 : changedTo] )
+                changedTo--;
+        }
+        record( SeamMetrics.Phase.PATH_WEIGHTS, START, EVENT,
+                (long)WIDTH * HEIGHT );
+    }
+    
+    /**
+     * Calculates the path weights of pixels [FROM, TO) in row J,
+     * given that the row above is complete, and records which
+     * pixel above each one was the cheapest to come from,
+     * counting the step costs if the energy function charged
+     * any. Ties go to the leftmost candidate.
+     * 
+     * @param maps
+     *      the maps being filled.
+     * @param J
+     *      the row to calculate (at least 1).
+     * @param PREV
+     *      the offset of the row above in the path weight map.
+     * @param CUR
+     *      the offset of row J in the path weight map.
+     * @param FROM
+     *      the first pixel to calculate.
+     * @param TO
+     *      one past the last pixel to calculate.
+     **/
+    static void pathWeightRow( final SeamMaps maps,
+                               final int      J,
+                               final int      PREV,
+                               final int      CUR,
+                               final int      FROM,
+                               final int      TO )
+    {
+        pathWeightRow( KERNEL, maps, J, PREV, CUR, FROM, TO );
+    }
+    
+    /**
+     * Calculates the path weights of pixels [FROM, TO) in row J
+     * as above, running the pixels away from the edges through
+     * a given kernel.
+     **/
+    static void pathWeightRow( final PathWeightKernel INNER,
+                               final SeamMaps         maps,
+                               final int              J,
+                               final int              PREV,
+                               final int              CUR,
+                               final int              FROM,
+                               final int              TO )
+    {
+        /* Local Constants */
+        final int    WIDTH       = maps.span;
+        final int    ROW         = J * maps.STRIDE;
+        final int[]  ENERGY      = maps.ENERGY;
+        final int[]  STEP_LEFT   = maps.stepLeft;
+        final int[]  STEP_RIGHT  = maps.stepRight;
+        final int[]  PATH_WEIGHT = maps.PATH_WEIGHTS;
+        final byte[] DIRS        = maps.DIRS;
+        final int    FIRST       = FROM > 0 ? FROM : 1;
+        final int    LAST        = TO < WIDTH ? TO : WIDTH-1;
+        
+        /*
+         * Calculate Side Path Weights
+         * (special case)
+         */
+        if ( 0 == FROM )
+        {
+            /* Block Variables */
+            int ne = 1 < WIDTH ? PATH_WEIGHT[PREV+1] : 0;
+            
+            if ( null != STEP_RIGHT )
+                ne += STEP_RIGHT[ROW];
+            if ( 1 < WIDTH && ne < PATH_WEIGHT[PREV] )
+            {
+                PATH_WEIGHT[CUR] = ne;
+                DIRS[ROW]        = NE;
+            }
+            else
+            {
+                PATH_WEIGHT[CUR] = PATH_WEIGHT[PREV];
+                DIRS[ROW]        = N;
+            }
+            PATH_WEIGHT[CUR] += ENERGY[ROW];
+        }
+        if ( WIDTH == TO && 1 < WIDTH )
+        {
+            /* Block Variables */
+            int nw = PATH_WEIGHT[PREV + WIDTH-2];
+            
+            if ( null != STEP_LEFT )
+                nw += STEP_LEFT[ROW + WIDTH-1];
+            if ( PATH_WEIGHT[PREV + WIDTH-1] < nw )
+            {
+                PATH_WEIGHT[CUR + WIDTH-1] = PATH_WEIGHT[PREV + WIDTH-1];
+                DIRS[ROW + WIDTH-1]        = N;
+            }
+            else
+            {
+                PATH_WEIGHT[CUR + WIDTH-1] = nw;
+                DIRS[ROW + WIDTH-1]        = NW;
+            }
+            PATH_WEIGHT[CUR + WIDTH-1] += ENERGY[ROW + WIDTH-1];
+        }
+        
+        /* Calculate Middle Path Weights */
+        if ( FIRST < LAST && null == STEP_LEFT )
+            INNER.middleRow( PATH_WEIGHT, DIRS, ENERGY,
+                             PREV, CUR, ROW, FIRST, LAST );
+        else if ( FIRST < LAST )
+            INNER.middleRow( PATH_WEIGHT, DIRS, ENERGY, STEP_LEFT, STEP_RIGHT,
+                             PREV, CUR, ROW, FIRST, LAST );
+    }
+    
+    /**
+     * Calculates the path weights and directions of a run of
+     * pixels away from the edges of a row, a pixel at a time.
+     * 
+     * @see PathWeightKernel#middleRow
+     **/
+    static void middleRow( final int[]  PATH_WEIGHT,
+                           final byte[] DIRS,
+                           final int[]  ENERGY,
+                           final int    PREV,
+                           final int    CUR,
+                           final int    ROW,
+                           final int    FROM,
+                           final int    TO )
+    {
+        for ( int i = FROM; i < TO; i++ )
+        {
+            /* Block Variables */
+            int  weight = PATH_WEIGHT[PREV + i-1];
+            byte dir    = NW;
+            
+            /* Calculate Weights */
+            if ( PATH_WEIGHT[PREV + i] < weight )
             {
-                /* Block Variables */
-                int weightNW = 0;
-                int weightN  = 0;
-                int weightNE = 0;
-                
-                /* Calculate Weights */
-                weightN  = pathWeights[i][j-1];
-                weightNW = i > 0 ? pathWeights[i-1][j-1] : Integer.MAX_VALUE;
-                weightNE = i+1 < end ? pathWeights[i+1][j-1] :
-                                       Integer.MAX_VALUE;
-                
-                pathWeights[i][j] = weightN < weightNW ? weightN : weightNW;
-                pathWeights[i][j] = pathWeights[i][j] > weightNE ?
-                                   weightNE : pathWeights[i][j];
-                pathWeights[i][j] += ENERGY[i][j];
+                weight = PATH_WEIGHT[PREV + i];
+                dir    = N;
             }
+            if ( PATH_WEIGHT[PREV + i+1] < weight )
+            {
+                weight = PATH_WEIGHT[PREV + i+1];
+                dir    = NE;
+            }
+            
+            PATH_WEIGHT[CUR + i] = weight + ENERGY[ROW + i];
+            DIRS[ROW + i]        = dir;
+        }
+    }
+    
+    /**
+     * Calculates the path weights and directions of a run of
+     * pixels away from the edges of a row, charging the
+     * diagonal steps, a pixel at a time.
+     * 
+     * @see PathWeightKernel#middleRow
+     **/
+    static void middleRow( final int[]  PATH_WEIGHT,
+                           final byte[] DIRS,
+                           final int[]  ENERGY,
+                           final int[]  STEP_LEFT,
+                           final int[]  STEP_RIGHT,
+                           final int    PREV,
+                           final int    CUR,
+                           final int    ROW,
+                           final int    FROM,
+                           final int    TO )
+    {
+        for ( int i = FROM; i < TO; i++ )
+        {
+            /* Block Variables */
+            int  weight = PATH_WEIGHT[PREV + i-1] + STEP_LEFT[ROW + i];
+            int  ne     = PATH_WEIGHT[PREV + i+1] + STEP_RIGHT[ROW + i];
+            byte dir    = NW;
+            
+            /* Calculate Weights */
+            if ( PATH_WEIGHT[PREV + i] < weight )
+            {
+                weight = PATH_WEIGHT[PREV + i];
+                dir    = N;
+            }
+            if ( ne < weight )
+            {
+                weight = ne;
+                dir    = NE;
+            }
+            
+            PATH_WEIGHT[CUR + i] = weight + ENERGY[ROW + i];
+            DIRS[ROW + i]        = dir;
+        }
+    }
+    
+    /**
+     * Loads VectorPathWeights if it and the module it needs are
+     * both there.
+     **/
+    private static PathWeightKernel loadKernel()
+    {
+        try
+        {
+            return (PathWeightKernel)Class.forName( "VectorPathWeights" )
+                                          .getDeclaredConstructor()
+                                          .newInstance();
+        }
+        catch ( ReflectiveOperationException | LinkageError e )
+        {
+            return SCALAR_KERNEL;
         }
-        return pathWeights;
     }
     
     /**
      * Calculates the minimum path from the top
-     * to the bottom of a given image.
+     * to the bottom of a given set of maps.
      * 
-     * @param PATH_WEIGHTS
-     *      the minimum energy required to get to every pixel.
+     * @param MAPS
+     *      the maps, with path weights and directions filled.
      * @return
      *      the minimum path.
      **/
-    private int[] getSeam( final int[][] PATH_WEIGHTS )
+    int[] getSeam( final SeamMaps MAPS )
     {
         /* Local Constants */
-        final int HEIGHT = PATH_WEIGHTS[0].length;
-        final int WIDTH  = PATH_WEIGHTS.length;
-        final int LAST   = HEIGHT-1;
+        final int        HEIGHT       = MAPS.LENGTH;
+        final int        WIDTH        = MAPS.span;
+        final int        LAST         = MAPS.weightRow( HEIGHT-1 );
+        final int[]      PATH_WEIGHTS = MAPS.PATH_WEIGHTS;
+        final byte[]     DIRS         = MAPS.DIRS;
+        final long       START        = start();
+        final PhaseEvent EVENT        = begin();
         
         /* Local Variables */
         int[] seam = new int[HEIGHT];
         
         /* Find Minimum Path Energy for Bottom Pixel */
-        seam[LAST] = 0;
+        seam[HEIGHT-1] = 0;
         for ( int j = 0; j < WIDTH; j++ )
-            if ( PATH_WEIGHTS[j][LAST] < PATH_WEIGHTS[seam[LAST]][LAST] )
-                seam[LAST] = j;
+            if ( PATH_WEIGHTS[LAST + j] < PATH_WEIGHTS[LAST + seam[HEIGHT-1]] )
+                seam[HEIGHT-1] = j;
         
         /* Trace Seam */
-        for ( int i = seam.length-2; i >= 0; i-- )
+        for ( int i = HEIGHT-1; i > 0; i-- )
+            seam[i-1] = seam[i] + DIRS[i * MAPS.STRIDE + seam[i]];
+        record( SeamMetrics.Phase.TRACE, START, EVENT, HEIGHT );
+        return seam;
+    }
+    
+    /**
+     * Traces up to COUNT pixel-disjoint seams from one set of
+     * maps. Bottom pixels are tried from cheapest to dearest;
+     * a seam that runs into a pixel already taken this pass is
+     * dropped.
+     * 
+     * @param MAPS
+     *      the maps, with path weights and directions filled.
+     * @param COUNT
+     *      the most seams to return.
+     * @param claimed
+     *      per map entry, the last pass that took it.
+     * @param PASS
+     *      the current pass (never 0).
+     * @return
+     *      the seams, cheapest first.
+     **/
+    private int[][] getSeams( final SeamMaps MAPS,
+                              final int      COUNT,
+                              final int[]    claimed,
+                              final int      PASS )
+    {
+        /* Local Constants */
+        final int        HEIGHT = MAPS.LENGTH;
+        final int        WIDTH  = MAPS.span;
+        final int        STRIDE = MAPS.STRIDE;
+        final int        LAST   = MAPS.weightRow( HEIGHT-1 );
+        final byte[]     DIRS   = MAPS.DIRS;
+        final long       START  = start();
+        final PhaseEvent EVENT  = begin();
+        
+        /* Local Variables */
+        long[]  order = new long[WIDTH];
+        int[][] seams = new int[Math.min( COUNT, WIDTH )][];
+        int[]   seam  = new int[HEIGHT];
+        int     found = 0;
+        
+        /* Sort Bottom Pixels by Path Weight */
+        for ( int i = 0; i < WIDTH; i++ )
+            order[i] = (long)MAPS.PATH_WEIGHTS[LAST + i] << 32 | i;
+        Arrays.sort( order );
+        
+        /* Trace Seams */
+        for ( int n = 0; n < WIDTH && found < seams.length; n++ )
         {
-            seam[i] = seam[i+1] > 0 ? seam[i+1]-1 : seam[i+1];
-            for ( int j = seam[i+1]; j <= seam[i+1]+1 && j < WIDTH; j++ )
-                if ( PATH_WEIGHTS[j][i] < PATH_WEIGHTS[seam[i]][i] )
-                    seam[i] = j;
+            /* Block Variables */
+            int j = HEIGHT-1;
+            
+            seam[j] = (int)order[n];
+            while ( claimed[j * STRIDE + seam[j]] != PASS && 0 < j )
+            {
+                seam[j-1] = seam[j] + DIRS[j * STRIDE + seam[j]];
+                j--;
+            }
+            if ( claimed[j * STRIDE + seam[j]] == PASS )
+                continue;
+            
+            for ( j = 0; j < HEIGHT; j++ )
+                claimed[j * STRIDE + seam[j]] = PASS;
+            seams[found++] = seam.clone();
         }
-        return seam;
+        record( SeamMetrics.Phase.TRACE, START, EVENT, (long)found * HEIGHT );
+        return Arrays.copyOf( seams, found );
+    }
+    
+    /**
+     * Returns the total energy of a seam just traced from a set
+     * of maps, i.e. the path weight at its bottom pixel.
+     * 
+     * @param MAPS
+     *      the maps the seam was traced from.
+     * @param SEAM
+     *      the seam.
+     * @return
+     *      the seam's energy.
+     **/
+    private static long getCost( final SeamMaps MAPS, final int[] SEAM )
+    {
+        return MAPS.PATH_WEIGHTS[MAPS.weightRow( MAPS.LENGTH-1 ) +
+                                 SEAM[MAPS.LENGTH-1]];
+    }
+    
+    /**
+     * Returns the time a phase starts at, or 0 if no metrics
+     * are being kept.
+     **/
+    private long start()
+    {
+        return null == metrics ? 0 : System.nanoTime();
+    }
+    
+    /**
+     * Returns a begun JFR event for a phase that starts now, or
+     * null if no metrics are being kept or no recording wants
+     * the event.
+     **/
+    private PhaseEvent begin()
+    {
+        return null == metrics ? null : PhaseEvent.start();
+    }
+    
+    /**
+     * Records one call of a phase, if metrics are being kept.
+     * 
+     * @param PHASE
+     *      the phase.
+     * @param START
+     *      what start() returned when the call began.
+     * @param EVENT
+     *      what begin() returned when the call began.
+     * @param PIXELS
+     *      the pixels the call covered.
+     **/
+    private void record( final SeamMetrics.Phase PHASE,
+                         final long              START,
+                         final PhaseEvent        EVENT,
+                         final long              PIXELS )
+    {
+        if ( null != metrics )
+            metrics.record( PHASE, START, EVENT, PIXELS );
+    }
+    
+    /**
+     * Returns the bytes the calling thread has allocated so
+     * far, or -1 if no metrics are being kept.
+     **/
+    private long allocated()
+    {
+        return null == metrics ? -1 : SeamMetrics.allocatedBytes();
+    }
+    
+    /**
+     * Records seams removed or inserted, if metrics are being
+     * kept.
+     * 
+     * @param COUNT
+     *      the number of seams.
+     * @param ALLOCATED
+     *      what allocated() returned before they were found.
+     **/
+    private void recordSeams( final int COUNT, final long ALLOCATED )
+    {
+        if ( null != metrics && 0 < COUNT )
+            metrics.recordSeams( COUNT, ALLOCATED );
     }
 }
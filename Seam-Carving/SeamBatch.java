@@ -0,0 +1,474 @@
+/*
+ * Class to seam-carve many images at once without a display.
+ */
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SeamBatch
+{
+	/* Class Constants */
+	/**
+	 * The number of threads decoding and encoding images.
+	 **/
+	private static final int IO_THREADS = 2;
+	/**
+	 * The largest target width or height.
+	 **/
+	private static final int MAX_SIDE = 1 << 15;
+	/**
+	 * How many times its own width or height an image may grow to.
+	 **/
+	private static final int MAX_GROWTH = 2;
+	
+	/**
+	 * One image to resize and what happened to it.
+	 **/
+	private static class Job extends ImagePipeline.Item
+	{
+		int width;
+		int height;
+		int newWidth;
+		int newHeight;
+		long carveNs;
+		
+		Job( File input, File output, int newWidth, int newHeight )
+		{
+			super( input, output );
+			this.newWidth  = newWidth;
+			this.newHeight = newHeight;
+		}
+	}
+	
+	public static void main( String... args )
+	{
+		/* Local Variables */
+		File source;
+		File outDir;
+		List<Job> jobs;
+		int threads   = Runtime.getRuntime().availableProcessors();
+		int batch     = 0;
+		int radius    = -1;
+		int newWidth  = -1;
+		int newHeight = -1;
+		String energy = Energies.DEFAULT;
+		boolean mapped = false;
+		long start;
+		
+		/* Stay Off the Display */
+		System.setProperty( "java.awt.headless", "true" );
+		
+		/* Get Parameters */
+		if ( 2 > args.length || args[0].equals( "-h" ) )
+			help();
+		
+		source = new File( args[0] );
+		outDir = new File( args[1] );
+		
+		try
+		{
+			for ( int i = 2; i < args.length; i++ )
+			{
+				switch ( args[i] )
+				{
+					case "-b":
+						batch = Integer.parseInt( args[++i] );
+						break;
+					case "-dim":
+						newWidth  = side( args[++i] );
+						newHeight = side( args[++i] );
+						break;
+					case "-e":
+						energy = args[++i];
+						break;
+					case "-h":
+						help();
+						break;
+					case "-map":
+						mapped = true;
+						break;
+					case "-p":
+						radius = Integer.parseInt( args[++i] );
+						break;
+					case "-t":
+						threads = Integer.parseInt( args[++i] );
+						break;
+					default:
+						System.out.println( "unknown option: " + args[i] +
+						                    "\nRun SeamBatch -h for help." );
+						System.exit(1);
+				}
+			}
+		}
+		catch ( IllegalArgumentException e )
+		{
+			System.out.println( e.getMessage() );
+			System.exit(1);
+		}
+		
+		if ( !outDir.isDirectory() && !outDir.mkdirs() )
+		{
+			System.out.println( "cannot create " + outDir );
+			System.exit(1);
+		}
+		
+		try
+		{
+			jobs = source.isDirectory() ?
+			       listDirectory( source, outDir, newWidth, newHeight ) :
+			       readManifest( source, outDir, newWidth, newHeight );
+		}
+		catch ( IOException e )
+		{
+			e.printStackTrace();
+			System.exit(1);
+			return;
+		}
+		
+		/* Resize Images */
+		start = System.nanoTime();
+		if ( mapped )
+			runMapped( jobs, outDir );
+		else
+			run( jobs, Math.max( 1, threads ), batch, radius,
+			     Energies.get( energy ) );
+		report( jobs, System.nanoTime() - start );
+	}
+	
+	/**
+	 * Resizes every image in a list. Each image is decoded,
+	 * carved, and encoded on its own pool, so I/O for some images
+	 * overlaps carving of others; at most two images per carving
+	 * thread are held in memory at once.
+	 **/
+	private static void run( List<Job> jobs, final int THREADS,
+	                         final int BATCH, final int RADIUS,
+	                         final EnergyFunction ENERGY )
+	{
+		ImagePipeline.run( jobs, IO_THREADS, THREADS, 2 * THREADS,
+		                   ( job, im ) -> carve( job, im, THREADS, BATCH,
+		                                         RADIUS, ENERGY ) );
+	}
+	
+	/**
+	 * Narrows every image in a list out of core, one at a time.
+	 * Each image is decoded a band of rows at a time into a
+	 * mapped pixel file in the output directory, carved there by
+	 * MappedSeam, and encoded straight from the mapping, so it
+	 * never has to fit on the heap. Only vertical seams are
+	 * removed: the height stays as it is.
+	 **/
+	private static void runMapped( List<Job> jobs, File outDir )
+	{
+		for ( Job job : jobs )
+		{
+			Path pixels = null;
+			long start  = System.nanoTime();
+			
+			try
+			{
+				pixels = Files.createTempFile( outDir.toPath(), "seam",
+				                               ".pixels" );
+				try ( MappedSeam m = MappedSeam.read( job.INPUT.toPath(),
+				                                      pixels ) )
+				{
+					job.width    = m.getWidth();
+					job.height   = m.getHeight();
+					job.decodeNs = System.nanoTime() - start;
+					
+					if ( 0 > job.newWidth )
+						job.newWidth = job.width - job.width / 4;
+					if ( 0 > job.newHeight )
+						job.newHeight = job.height;
+					if ( job.width < job.newWidth ||
+					     job.height != job.newHeight )
+						throw new IllegalArgumentException(
+							"cannot resize " + job.width + "x" + job.height +
+							" to " + job.newWidth + "x" + job.newHeight +
+							" with -map, which only narrows" );
+					
+					start = System.nanoTime();
+					m.shrink( job.width - job.newWidth );
+					job.carveNs = System.nanoTime() - start;
+					
+					start = System.nanoTime();
+					m.write( job.OUTPUT.toPath() );
+					job.encodeNs = System.nanoTime() - start;
+				}
+			}
+			catch ( IOException | RuntimeException e )
+			{
+				job.error = e.toString();
+			}
+			finally
+			{
+				if ( null != pixels )
+					pixels.toFile().delete();
+			}
+		}
+	}
+	
+	private static UWECImage carve( Job job, UWECImage im,
+	                                final int THREADS, final int BATCH,
+	                                final int RADIUS,
+	                                final EnergyFunction ENERGY )
+	{
+		/* Local Constants */
+		final long START = System.nanoTime();
+		final Seam S = new Seam();
+		
+		/* Local Variables */
+		int decWidth;
+		int decHeight;
+		
+		job.width  = im.getWidth();
+		job.height = im.getHeight();
+		if ( 0 > job.newWidth )
+			job.newWidth  = im.getWidth()  - im.getWidth()  / 4;
+		if ( 0 > job.newHeight )
+			job.newHeight = im.getHeight() - im.getHeight() / 4;
+		if ( (long)MAX_GROWTH * im.getWidth()  < job.newWidth ||
+		     (long)MAX_GROWTH * im.getHeight() < job.newHeight )
+			throw new IllegalArgumentException(
+				"cannot grow " + im.getWidth() + "x" + im.getHeight() +
+				" to " + job.newWidth + "x" + job.newHeight + ", more than " +
+				MAX_GROWTH + " times" );
+		decWidth  = im.getWidth()  - job.newWidth;
+		decHeight = im.getHeight() - job.newHeight;
+		
+		S.setEnergyFunction( ENERGY );
+		
+		/* Images Already Run in Parallel */
+		if ( 1 < THREADS )
+			S.setParallelism( 1 );
+		
+		if ( 0 < BATCH )
+		{
+			S.batchVSShrink( im, Math.max( 0, decWidth ),  BATCH );
+			S.batchHSShrink( im, Math.max( 0, decHeight ), BATCH );
+		}
+		else if ( 0 <= RADIUS )
+		{
+			S.setBandRadius( RADIUS );
+			S.pyramidVSShrink( im, Math.max( 0, decWidth ) );
+			S.pyramidHSShrink( im, Math.max( 0, decHeight ) );
+		}
+		else
+		{
+			S.fastVSShrink( im, Math.max( 0, decWidth ) );
+			S.fastHSShrink( im, Math.max( 0, decHeight ) );
+		}
+		S.batchVSGrow( im, Math.max( 0, -decWidth ) );
+		S.batchHSGrow( im, Math.max( 0, -decHeight ) );
+		
+		job.carveNs = System.nanoTime() - START;
+		return im;
+	}
+	
+	/**
+	 * Makes a job for every image ImageIO or RawImage can read in
+	 * a directory, all with the same target dimensions.
+	 **/
+	private static List<Job> listDirectory( File dir, File outDir,
+	                                        int newWidth, int newHeight )
+		throws IOException
+	{
+		/* Local Variables */
+		List<Job> jobs = new ArrayList<>();
+		File[] files = dir.listFiles();
+		
+		if ( null == files )
+			throw new IOException( "cannot list " + dir );
+		Arrays.sort( files );
+		
+		for ( File f : files )
+			if ( f.isFile() && ImagePipeline.canRead( f ) )
+				jobs.add( new Job( f, new File( outDir, f.getName() ),
+				                   newWidth, newHeight ) );
+		return jobs;
+	}
+	
+	/**
+	 * Makes a job for every line of a manifest. Each line holds an
+	 * image path, relative to the manifest, optionally followed by
+	 * its target width and height. Blank lines and lines starting
+	 * with # are skipped. An image given a size is written as
+	 * name_WxH.ext, so one image may be listed at several sizes;
+	 * two lines that would still write the same file are rejected.
+	 **/
+	private static List<Job> readManifest( File manifest, File outDir,
+	                                       int newWidth, int newHeight )
+		throws IOException
+	{
+		/* Local Variables */
+		List<Job> jobs = new ArrayList<>();
+		Map<File, String> outputs = new HashMap<>();
+		File base = manifest.getAbsoluteFile().getParentFile();
+		int number = 0;
+		
+		try ( BufferedReader in =
+		          new BufferedReader( new FileReader( manifest ) ) )
+		{
+			String line;
+			while ( null != ( line = in.readLine() ) )
+			{
+				String[] fields = line.trim().split( "\\s+" );
+				int width  = newWidth;
+				int height = newHeight;
+				
+				number++;
+				if ( fields[0].isEmpty() || fields[0].startsWith( "#" ) )
+					continue;
+				if ( 1 != fields.length && 3 != fields.length )
+					throw new IOException( "bad manifest line " + number +
+					                       ": " + line );
+				if ( 3 == fields.length )
+				{
+					try
+					{
+						width  = side( fields[1] );
+						height = side( fields[2] );
+					}
+					catch ( IllegalArgumentException e )
+					{
+						throw new IOException( "manifest line " + number +
+						                       " \"" + line + "\": " +
+						                       e.getMessage() );
+					}
+				}
+				
+				File f = new File( fields[0] );
+				if ( !f.isAbsolute() )
+					f = new File( base, fields[0] );
+				
+				String name = f.getName();
+				if ( 3 == fields.length )
+				{
+					int dot = name.lastIndexOf( '.' );
+					if ( 0 > dot )
+						dot = name.length();
+					name = name.substring( 0, dot ) + "_" + width + "x" +
+					       height + name.substring( dot );
+				}
+				File output = new File( outDir, name );
+				String earlier = outputs.put( output, line );
+				if ( null != earlier )
+					throw new IOException( "manifest lines \"" + earlier +
+					                       "\" and \"" + line +
+					                       "\" both write " + output );
+				
+				jobs.add( new Job( f, output, width, height ) );
+			}
+		}
+		return jobs;
+	}
+	
+	/**
+	 * Parses a target width or height.
+	 * 
+	 * @throws IllegalArgumentException
+	 *      if it is not a number from 1 to MAX_SIDE.
+	 **/
+	private static int side( String text )
+	{
+		int side;
+		
+		try
+		{
+			side = Integer.parseInt( text );
+		}
+		catch ( NumberFormatException e )
+		{
+			side = 0;
+		}
+		if ( 1 > side || MAX_SIDE < side )
+			throw new IllegalArgumentException( "bad size " + text +
+			                                    ": must be from 1 to " +
+			                                    MAX_SIDE );
+		return side;
+	}
+	
+	/**
+	 * Prints how long each stage took for every image.
+	 **/
+	private static void report( List<Job> jobs, long wallNs )
+	{
+		/* Local Variables */
+		long decode = 0;
+		long carve  = 0;
+		long encode = 0;
+		int  failed = 0;
+		
+		System.out.printf( "%-32s %11s %11s %9s %9s %9s%n", "image", "from",
+		                   "to", "decode", "carve", "encode" );
+		for ( Job job : jobs )
+		{
+			if ( null != job.error )
+			{
+				System.out.printf( "%-32s failed: %s%n",
+				                   job.INPUT.getName(), job.error );
+				failed++;
+				continue;
+			}
+			System.out.printf( "%-32s %5dx%-5d %5dx%-5d %9.1f %9.1f %9.1f%n",
+			                   job.INPUT.getName(), job.width, job.height,
+			                   job.newWidth, job.newHeight, job.decodeNs / 1e6,
+			                   job.carveNs / 1e6, job.encodeNs / 1e6 );
+			decode += job.decodeNs;
+			carve  += job.carveNs;
+			encode += job.encodeNs;
+		}
+		System.out.printf( "%-32s %23s %9.1f %9.1f %9.1f%n", "total (ms)", "",
+		                   decode / 1e6, carve / 1e6, encode / 1e6 );
+		System.out.printf( "%d images, %d failed, %.1f ms wall time%n",
+		                   jobs.size(), failed, wallNs / 1e6 );
+		if ( 0 < failed )
+			System.exit(1);
+	}
+	
+	public static void help()
+	{
+		String output =
+		"Usage: SeamBatch <dir|manifest> <outdir> [-options]\n" +
+		"   Or\n" +
+		"       SeamBatch -h\n" +
+		"Resizes every image in <dir>, or every image listed in\n" +
+		"<manifest> (one \"path [width height]\" per line), writing\n" +
+		"the results to <outdir> without opening any windows.\n" +
+		"A manifest line with a size writes name_WxH.ext, so an\n" +
+		"image may be listed at several sizes.\n" +
+		"Images named *.rawi are read and written as raw packed\n" +
+		"pixels, with no decoding or encoding.\n" +
+		"where options include:\n\t" +
+		"-b <seams>\n\t\t" +
+		        "Take up to <seams> seams per pass (see SeamDemo -b).\n\t" +
+		"-dim <width> <height>\n\t\t" +
+		        "The new dimensions for images the manifest gives none.\n\t\t" +
+		        "Defaults are 75% of the original. Sizes must be from\n\t\t" +
+		        "1 to 32768, and at most twice the original.\n\t" +
+		"-e <energy>\n\t\t" +
+		        "The energy function to carve by (see SeamDemo -h).\n\t" +
+		"-h\n\t\t" +
+		        "This help text.\n\t" +
+		"-map\n\t\t" +
+		        "Narrow each image out of core, one at a time, through\n\t\t" +
+		        "a memory-mapped pixel file in <outdir>, so it never\n\t\t" +
+		        "has to fit on the heap. Only the width changes; by\n\t\t" +
+		        "default to 75%. Energy is always gradient, and\n\t\t" +
+		        "-b, -e, -p and -t do not apply. Write PNG or raw\n\t\t" +
+		        "images to keep the output off the heap too.\n\t" +
+		"-p <radius>\n\t\t" +
+		        "Find seams coarse to fine (see SeamDemo -p).\n\t" +
+		"-t <threads>\n\t\t" +
+		        "The number of images to carve at once.\n\t\t" +
+		        "Default is the number of processors.\n\t";
+		System.out.println( output );
+		System.exit( 0 );
+	}
+}
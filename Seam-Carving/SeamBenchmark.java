@@ -0,0 +1,412 @@
+/*
+ * Class to time each stage of seam carving, and whole shrinks,
+ * on synthetic and real images, and to compare the results
+ * against a stored baseline.
+ */
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class SeamBenchmark
+{
+	/* Class Constants */
+	/**
+	 * The seams removed by each end-to-end shrink.
+	 **/
+	private static final int SEAMS = 16;
+	
+	/**
+	 * The default synthetic image sizes, 256x256 to 8K.
+	 **/
+	private static final String SIZES =
+		"256x256,1024x1024,1920x1080,3840x2160,7680x4320";
+	
+	/**
+	 * One operation to time. setUp() runs before every call of
+	 * run() and is neither timed nor counted as allocation.
+	 **/
+	private interface Op
+	{
+		default void setUp()
+		{}
+		
+		void run();
+	}
+	
+	/**
+	 * What one benchmark measured on one image.
+	 **/
+	private static class Result
+	{
+		final String NAME;
+		final String IMAGE;
+		final double NS_PER_OP;
+		final double BYTES_PER_OP;
+		
+		Result( String name, String image, double nsPerOp, double bytesPerOp )
+		{
+			this.NAME         = name;
+			this.IMAGE        = image;
+			this.NS_PER_OP    = nsPerOp;
+			this.BYTES_PER_OP = bytesPerOp;
+		}
+		
+		String key()
+		{
+			return NAME + "\t" + IMAGE;
+		}
+	}
+	
+	public static void main( String... args )
+	{
+		/* Local Variables */
+		Map<String, Supplier<UWECImage>> images = new LinkedHashMap<>();
+		List<Result> results = new ArrayList<>();
+		Map<String, Result> baseline = null;
+		String sizes    = SIZES;
+		List<String> files = new ArrayList<>();
+		String only     = null;
+		String save     = null;
+		double seconds  = 1.0;
+		double tolerance = 10.0;
+		int regressions = 0;
+		
+		/* Stay Off the Display */
+		System.setProperty( "java.awt.headless", "true" );
+		
+		/* Get Parameters */
+		for ( int i = 0; i < args.length; i++ )
+		{
+			switch ( args[i] )
+			{
+				case "-b":
+					baseline = load( args[++i] );
+					break;
+				case "-h":
+					help();
+					break;
+				case "-i":
+					files.add( args[++i] );
+					break;
+				case "-o":
+					only = "," + args[++i] + ",";
+					break;
+				case "-s":
+					sizes = args[++i];
+					break;
+				case "-t":
+					seconds = Double.parseDouble( args[++i] );
+					break;
+				case "-tol":
+					tolerance = Double.parseDouble( args[++i] );
+					break;
+				case "-w":
+					save = args[++i];
+					break;
+				default:
+					System.out.println( "unknown option: " + args[i] + "\n" +
+					                    "Run SeamBenchmark -h for help." );
+					System.exit(1);
+			}
+		}
+		
+		/* Name Images; Each Is Made or Read When Its Turn Comes */
+		if ( !sizes.isEmpty() )
+			for ( String size : sizes.split( "," ) )
+			{
+				String[] dims = size.split( "x" );
+				images.put( size, () -> EnergyBenchmark.synthetic(
+				                            Integer.parseInt( dims[0] ),
+				                            Integer.parseInt( dims[1] ) ) );
+			}
+		for ( String file : files )
+			images.put( new File( file ).getName(),
+			            () -> new UWECImage( file ) );
+		
+		System.out.printf( "%-22s %-12s %14s %14s %11s %9s%n", "benchmark",
+		                   "image", "us/op", "bytes/op", "alloc MB/s",
+		                   null == baseline ? "" : "vs base" );
+		
+		for ( String image : images.keySet() )
+		{
+			UWECImage im = images.get( image ).get();
+			
+			for ( Map.Entry<String, Op> bench : benchmarks( im ).entrySet() )
+			{
+				if ( null != only &&
+				     !only.contains( "," + bench.getKey() + "," ) )
+					continue;
+				
+				Result result = measure( bench.getKey(), image,
+				                         bench.getValue(),
+				                         (long)( seconds * 1e9 ) );
+				Result base = null == baseline ? null :
+				              baseline.get( result.key() );
+				String change = "";
+				
+				if ( null != base )
+				{
+					double percent = 100.0 * ( result.NS_PER_OP -
+					                           base.NS_PER_OP ) /
+					                 base.NS_PER_OP;
+					change = String.format( "%+8.1f%%", percent );
+					if ( percent > tolerance )
+					{
+						change += " REGRESSION";
+						regressions++;
+					}
+				}
+				results.add( result );
+				System.out.printf( "%-22s %-12s %14.1f %14.0f %11.1f %s%n",
+				                   result.NAME, result.IMAGE,
+				                   result.NS_PER_OP / 1000.0,
+				                   result.BYTES_PER_OP,
+				                   result.BYTES_PER_OP * 1000.0 /
+				                       result.NS_PER_OP,
+				                   change );
+			}
+		}
+		
+		if ( null != save )
+			write( save, results );
+		if ( 0 < regressions )
+		{
+			System.out.println( regressions + " benchmarks slower than " +
+			                    "the baseline by more than " + tolerance +
+			                    "%" );
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Returns the benchmarks for one image, in the order they
+	 * run. Stages are timed for vertical seams; the maps and
+	 * seam they start from are made once, up front.
+	 **/
+	private static Map<String, Op> benchmarks( final UWECImage IM )
+	{
+		/* Local Constants */
+		final Seam     S    = new Seam();
+		final SeamMaps MAPS = new SeamMaps( IM.getWidth(), IM.getHeight(),
+		                                    false );
+		final int[]    SEAM;
+		
+		/* Local Variables */
+		Map<String, Op> ops = new LinkedHashMap<>();
+		
+		S.getEnergy( IM, false, MAPS, null );
+		S.getPathWeights( MAPS );
+		SEAM = S.getSeam( MAPS );
+		
+		ops.put( "getEnergy", () -> S.getEnergy( IM, false, MAPS, null ) );
+		ops.put( "getPathWeights", () -> S.getPathWeights( MAPS ) );
+		ops.put( "getPathWeights(seam)", new Incremental( S, IM ) );
+		ops.put( "getSeam", () -> S.getSeam( MAPS ) );
+		ops.put( "shrinkImage", () -> IM.shrinkImage( SEAM ) );
+		ops.put( "transpose", IM::transpose );
+		ops.put( "transposeR", IM::transposeR );
+		ops.put( "fastVSShrink",
+		         new Shrink( IM, im -> S.fastVSShrink( im, SEAMS ) ) );
+		ops.put( "fastHSShrink",
+		         new Shrink( IM, im -> S.fastHSShrink( im, SEAMS ) ) );
+		ops.put( "verticalSeamShrink", new Shrink( IM, im -> {
+			for ( int i = 0; i < SEAMS; i++ )
+				S.verticalSeamShrink( im );
+		} ) );
+		return ops;
+	}
+	
+	/**
+	 * Removes SEAMS seams from a fresh copy of an image.
+	 **/
+	private static class Shrink implements Op
+	{
+		final UWECImage IM;
+		final Consumer<UWECImage> SHRINK;
+		UWECImage copy;
+		
+		Shrink( UWECImage im, Consumer<UWECImage> shrink )
+		{
+			this.IM     = im;
+			this.SHRINK = shrink;
+		}
+		
+		public void setUp()
+		{
+			copy = IM.copy();
+		}
+		
+		public void run()
+		{
+			SHRINK.accept( copy );
+		}
+	}
+	
+	/**
+	 * Updates path weights after one seam is removed, carving
+	 * a copy of an image down to three quarters of its width
+	 * and then starting over. Only the update is timed.
+	 **/
+	private static class Incremental implements Op
+	{
+		final Seam S;
+		final UWECImage IM;
+		UWECImage work;
+		SeamMaps maps;
+		int[] seam;
+		
+		Incremental( Seam s, UWECImage im )
+		{
+			this.S  = s;
+			this.IM = im;
+		}
+		
+		public void setUp()
+		{
+			if ( null == maps || work.getWidth() < IM.getWidth() * 3 / 4 )
+			{
+				work = IM.copy();
+				maps = new SeamMaps( work.getWidth(), work.getHeight(), false );
+				S.getEnergy( work, false, maps, null );
+				S.getPathWeights( maps );
+			}
+			seam = S.getSeam( maps );
+			work.removeVerticalSeam( seam );
+			S.getEnergy( work, false, maps, seam );
+		}
+		
+		public void run()
+		{
+			S.getPathWeights( maps, seam );
+		}
+	}
+	
+	/**
+	 * Warms an operation up for about a given time, then runs
+	 * it for about as long again and returns the mean time and
+	 * allocation per run. Each phase runs it at least once.
+	 **/
+	private static Result measure( String name, String image, Op op,
+	                               long runNanos )
+	{
+		long runs  = 0;
+		long nanos = 0;
+		long bytes = 0;
+		long start = System.nanoTime();
+		
+		/* Warm Up */
+		do
+		{
+			op.setUp();
+			op.run();
+		}
+		while ( System.nanoTime() - start < runNanos );
+		
+		/* Measure */
+		start = System.nanoTime();
+		do
+		{
+			op.setUp();
+			long allocated = SeamMetrics.allocatedBytes();
+			long begin = System.nanoTime();
+			op.run();
+			nanos += System.nanoTime() - begin;
+			bytes += SeamMetrics.allocatedBytes() - allocated;
+			runs++;
+		}
+		while ( System.nanoTime() - start < runNanos );
+		
+		return new Result( name, image, (double)nanos / runs,
+		                   (double)bytes / runs );
+	}
+	
+	/**
+	 * Reads a baseline written by -w.
+	 **/
+	private static Map<String, Result> load( String filename )
+	{
+		Map<String, Result> baseline = new HashMap<>();
+		
+		try ( BufferedReader in = new BufferedReader(
+		                              new FileReader( filename ) ) )
+		{
+			String line;
+			while ( null != ( line = in.readLine() ) )
+			{
+				String[] fields = line.split( "\t" );
+				if ( line.startsWith( "#" ) || 4 != fields.length )
+					continue;
+				
+				Result result = new Result( fields[0], fields[1],
+				                            Double.parseDouble( fields[2] ),
+				                            Double.parseDouble( fields[3] ) );
+				baseline.put( result.key(), result );
+			}
+		}
+		catch ( IOException e )
+		{
+			e.printStackTrace();
+			System.exit(1);
+		}
+		return baseline;
+	}
+	
+	/**
+	 * Writes results as a baseline for -b, one tab-separated
+	 * line per benchmark and image.
+	 **/
+	private static void write( String filename, List<Result> results )
+	{
+		try ( PrintWriter out = new PrintWriter( new FileWriter( filename ) ) )
+		{
+			out.println( "# benchmark\timage\tns/op\tbytes/op" );
+			for ( Result result : results )
+				out.printf( "%s\t%.1f\t%.1f%n", result.key(),
+				            result.NS_PER_OP, result.BYTES_PER_OP );
+		}
+		catch ( IOException e )
+		{
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+	
+	public static void help()
+	{
+		String output =
+		"Usage: SeamBenchmark [-options]\n" +
+		"Times each stage of seam carving on vertical seams, and\n" +
+		"whole shrinks of " + SEAMS + " seams, on every image. The large\n" +
+		"sizes need a big heap, e.g. java -Xmx4g SeamBenchmark.\n" +
+		"where options include:\n\t" +
+		"-b <file>\n\t\t" +
+		        "Compare against a baseline written by -w, flagging\n\t\t" +
+		        "benchmarks that got slower, and exit with an error if\n\t\t" +
+		        "any did.\n\t" +
+		"-h\n\t\t" +
+		        "This help text.\n\t" +
+		"-i <file>\n\t\t" +
+		        "Also time a real image. May be given more than once.\n\t" +
+		"-o <name,...>\n\t\t" +
+		        "Run only the named benchmarks.\n\t" +
+		"-s <WxH,...>\n\t\t" +
+		        "The synthetic image sizes, or \"\" for none. Default\n\t\t" +
+		        "is " + SIZES + ".\n\t" +
+		"-t <seconds>\n\t\t" +
+		        "Time to warm up, and then to measure, each benchmark\n\t\t" +
+		        "on each image. Default is 1.\n\t" +
+		"-tol <percent>\n\t\t" +
+		        "How much slower than the baseline counts as a\n\t\t" +
+		        "regression. Default is 10.\n\t" +
+		"-w <file>\n\t\t" +
+		        "Write the results to <file> as a baseline.\n\t";
+		System.out.println( output );
+		System.exit( 0 );
+	}
+}
@@ -6,11 +6,22 @@ public class SeamDemo
 		String input;
 		UWECImage im;
 		Seam s;
-		int decWidth  = -1;
-		int decHeight = -1;
+		int decWidth  = 0;
+		int decHeight = 0;
+		boolean sized = false;
 		int wait      = -1;
+		int batch     = 0;
+		int radius    = -1;
 		boolean fast  = false;
 		String output = null;
+		String index  = null;
+		String report = null;
+		SeamMetrics metrics = null;
+		SeamDisplay display;
+		int fps       = 30;
+		String energy = Energies.DEFAULT;
+		int incWidth;
+		int incHeight;
 		
 		/* Get Parameters */
 		if ( args[0].equals( "-h" ) )
@@ -23,25 +34,45 @@ public class SeamDemo
 		{
 			switch ( args[i] )
 			{
+				case "-b":
+					batch = Integer.parseInt( args[++i] );
+					break;
 				case "-dim":
 					decWidth  = im.getWidth()  - Integer.parseInt( args[++i] );
 					decHeight = im.getHeight() - Integer.parseInt( args[++i] );
+					sized = true;
+					break;
+				case "-e":
+					energy = args[++i];
 					break;
 				case "-f":
 					fast = true;
 					break;
 				case "-h":
 					help();
+				case "-m":
+					report = args[++i];
+					break;
 				case "-o":
 					output = args[++i];
 					break;
+				case "-p":
+					radius = Integer.parseInt( args[++i] );
+					break;
+				case "-r":
+					fps = Integer.parseInt( args[++i] );
+					break;
 				case "-s":
 					decWidth  = Integer.parseInt( args[++i] );
 					decHeight = Integer.parseInt( args[++i] );
+					sized = true;
 					break;
 				case "-w":
 					wait = Integer.parseInt( args[++i] );
 					break;
+				case "-x":
+					index = args[++i];
+					break;
 				default:
 					System.out.println( "unknown option: " + args[i] + "\n" +
 					                    "Run SeamDemo -h for help." );
@@ -49,18 +80,59 @@ public class SeamDemo
 			}
 		}
 		
-		if ( 0 > decWidth )
+		if ( !sized )
+		{
 			decWidth  = im.getWidth()  / 4;
-		if ( 0 > decHeight )
 			decHeight = im.getHeight() / 4;
+		}
+		incWidth  = Math.max( 0, -decWidth );
+		incHeight = Math.max( 0, -decHeight );
+		decWidth  = Math.max( 0, decWidth );
+		decHeight = Math.max( 0, decHeight );
 		if ( 0 > wait )
 			s = new Seam();
 		else
 			s = new Seam( wait );
+		s.setEnergyFunction( Energies.get( energy ) );
+		if ( null != report )
+		{
+			metrics = new SeamMetrics();
+			s.setMetrics( metrics );
+			im.setMetrics( metrics );
+		}
+		
+		/* Narrow Using a Retargeting Index */
+		if ( null != index )
+		{
+			im.switchImage( getIndex( index, im, s ).retarget(
+			                    im, im.getWidth() - decWidth ) );
+			decWidth = 0;
+		}
 		
 		/* Demonstrate Seam */
-		im.openNewDisplayWindow();
-		if ( fast )
+		display = new SeamDisplay( fps );
+		s.setDisplay( display );
+		display.show( im );
+		if ( 0 < batch )
+		{
+			UWECImage exact = im.copy();
+			long batchCost = s.batchVSShrink( im, decWidth,  batch ) +
+			                 s.batchHSShrink( im, decHeight, batch );
+			
+			compare( "batched", batchCost, s, exact, decWidth, decHeight );
+		}
+		else if ( 0 <= radius )
+		{
+			UWECImage exact = im.copy();
+			long pyramidCost;
+			
+			s.setBandRadius( radius );
+			pyramidCost = s.pyramidVSShrink( im, decWidth ) +
+			              s.pyramidHSShrink( im, decHeight );
+			
+			compare( "pyramid", pyramidCost, s, exact, decWidth, decHeight );
+		}
+		else if ( fast )
 		{
 			s.fastVSShrink( im, decWidth );
 			s.fastHSShrink( im, decHeight );
@@ -74,8 +146,80 @@ public class SeamDemo
 				s.horizontalSeamShrink( im );
 		}
 		
+		/* Grow Past the Original Size */
+		s.batchVSGrow( im, incWidth );
+		s.batchHSGrow( im, incHeight );
+		display.show( im );
+		
 		if ( null != output )
 			im.write( output );
+		if ( null != report )
+			writeReport( report, metrics );
+	}
+	
+	/**
+	 * Shrinks a copy of the image exactly and prints how the
+	 * energy removed by a faster method compares.
+	 **/
+	private static void compare( String method, long cost, Seam s,
+	                             UWECImage exact, int decWidth,
+	                             int decHeight )
+	{
+		long exactCost;
+		
+		/* Carve the Copy Out of Sight */
+		s.setDisplay( null );
+		exactCost = s.fastVSShrink( exact, decWidth ) +
+		            s.fastHSShrink( exact, decHeight );
+		
+		System.out.printf( "Removed energy: %d %s, %d exact (%+.2f%%)%n",
+		                   cost, method, exactCost,
+		                   0 == exactCost ? 0.0 :
+		                   100.0 * ( cost - exactCost ) / exactCost );
+	}
+	
+	/**
+	 * Loads the retargeting index for an image from a file,
+	 * building and writing it first if the file does not exist.
+	 **/
+	private static RetargetIndex getIndex( String filename, UWECImage im,
+	                                       Seam s )
+	{
+		try
+		{
+			if ( new java.io.File( filename ).exists() )
+				return RetargetIndex.load( filename );
+			
+			RetargetIndex index = RetargetIndex.build( im, s );
+			index.write( filename );
+			return index;
+		}
+		catch ( java.io.IOException e )
+		{
+			e.printStackTrace();
+			System.exit( 1 );
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes the time spent in each phase of the run to a file
+	 * as JSON.
+	 **/
+	private static void writeReport( String filename, SeamMetrics metrics )
+	{
+		byte[] json = metrics.toJson().getBytes(
+		                  java.nio.charset.StandardCharsets.UTF_8 );
+		try
+		{
+			java.nio.file.Files.write( java.nio.file.Paths.get( filename ),
+			                           json );
+		}
+		catch ( java.io.IOException e )
+		{
+			e.printStackTrace();
+			System.exit( 1 );
+		}
 	}
 	
 	public static void help()
@@ -85,20 +229,43 @@ public class SeamDemo
 		"   Or\n" +
 		"       SeamDemo -h\n" +
 		"where options include:\n\t" +
+		"-b <seams>\n\t\t" +
+		        "Shrink image fast, taking up to <seams> seams per pass,\n\t\t" +
+		        "and report the energy removed against -f.\n\t" +
 		"-dim <width> <height>\n\t\t" +
 		        "The desired new dimensions of the image (in pixels).\n\t\t" +
-		        "Defaults are 75% of the original.\n\t" +
+		        "Defaults are 75% of the original. Dimensions larger\n\t\t" +
+		        "than the original grow the image by inserting seams.\n\t" +
+		"-e <energy>\n\t\t" +
+		        "The energy function to carve by, one of:\n\t\t" +
+		        String.join( ", ", Energies.getNames() ) + ".\n\t\t" +
+		        "Default is " + Energies.DEFAULT + ".\n\t" +
 		"-f\n\t\t" +
 				"Shrink image as fast as possible.\n\t" +
 		"-h\n\t\t" +
 		        "This help text.\n\t" +
+		"-m <file>\n\t\t" +
+		        "Write the time, pixels per second and histogram of\n\t\t" +
+		        "call times of every phase (energy, path weights, trace,\n\t\t" +
+		        "search, shrink, transpose, repaint), and the bytes\n\t\t" +
+		        "allocated per seam, to <file> as JSON.\n\t" +
 		"-o <file>\n\t\t" +
 		        "Write the new image to a file.\n\t" +
+		"-p <radius>\n\t\t" +
+		        "Shrink image fast, finding each seam coarse to fine and\n\t\t" +
+		        "searching <radius> pixels either side at each finer\n\t\t" +
+		        "level, and report the energy removed against -f.\n\t" +
+		"-r <fps>\n\t\t" +
+		        "The most frames per second to show. Seams removed\n\t\t" +
+		        "between frames are not shown. Default is 30.\n\t" +
 		"-s <width> <height>\n\t\t" +
 		        "Shrink image by the given dimensions (in pixels).\n\t\t" +
 		        "Default shrinks to 75% of the original.\n\t" +
 		"-w <time>\n\t\t" +
-		        "Set a wait time between each modification (in ms).\n\t";
+		        "Set a wait time between each modification (in ms).\n\t" +
+		"-x <file>\n\t\t" +
+		        "Narrow the image using the retargeting index in <file>,\n\t\t" +
+		        "building it there first if it does not exist.\n\t";
 		System.out.println( output );
 		System.exit( 0 );
 	}
@@ -0,0 +1,214 @@
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Class to show an image being carved without holding up the
+ * thread carving it.
+ * <p>
+ * The carving thread offers the image before each seam is
+ * removed. An offer is only taken once the display has drawn
+ * the frame before it: the pixels are then copied into a new
+ * frame with the seam drawn in red, and handed over. Offers
+ * made in between return at once, so the seams they show are
+ * never drawn and carving runs at nearly full speed. The
+ * display looks for a new frame at most FPS times a second.
+ * <p>
+ * Closing the window exits the program.
+ **/
+
+public class SeamDisplay
+{
+    /* Class Constants */
+    /**
+     * The packed color used to draw seams.
+     **/
+    private static final int RED = 0xFF0000;
+    
+    /* Instance Constants */
+    /**
+     * The frame waiting to be drawn, or null.
+     **/
+    private final AtomicReference<BufferedImage> PENDING;
+    
+    /* Instance Variables */
+    /**
+     * Whether the display has drawn the last frame handed over
+     * and wants the next.
+     **/
+    private volatile boolean wanted;
+    /**
+     * The number of offers not taken.
+     **/
+    private volatile long    dropped;
+    /**
+     * The frame being drawn; only touched on the event thread.
+     **/
+    private BufferedImage    current;
+    private JFrame           window;
+    private JPanel           panel;
+    
+    /*== Constructors ==*/
+    
+    /**
+     * Opens a display window.
+     * 
+     * @param FPS
+     *      the most frames to draw per second.
+     **/
+    public SeamDisplay( final int FPS )
+    {
+        if ( 1 > FPS )
+            throw new IllegalArgumentException( "frame rate must be positive" );
+        
+        this.PENDING = new AtomicReference<>();
+        this.wanted  = true;
+        SwingUtilities.invokeLater( () -> open( FPS ) );
+    }
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Offers the image as it is before a seam is removed. If
+     * the display is still busy with an earlier frame, nothing
+     * is copied.
+     * 
+     * @param IM
+     *      the image.
+     * @param SEAMS
+     *      the seams about to be removed, drawn in red, or null.
+     * @param HORIZONTAL
+     *      whether the seams are horizontal.
+     * @return
+     *      whether a frame was handed over.
+     **/
+    public boolean offer( final UWECImage IM,
+                          final int[][]   SEAMS,
+                          final boolean   HORIZONTAL )
+    {
+        if ( !wanted )
+        {
+            dropped++;
+            return false;
+        }
+        
+        wanted = false;
+        PENDING.set( snapshot( IM, SEAMS, HORIZONTAL ) );
+        return true;
+    }
+    
+    /**
+     * Hands over the image as it is, whether or not the
+     * display is done with the last frame. Used to show the
+     * finished image.
+     * 
+     * @param IM
+     *      the image.
+     **/
+    public void show( final UWECImage IM )
+    {
+        wanted = false;
+        PENDING.set( snapshot( IM, null, false ) );
+    }
+    
+    /*== Accessors ==*/
+    
+    /**
+     * Returns the number of frames offered but not drawn.
+     **/
+    public long getDropped()
+    {
+        return dropped;
+    }
+    
+    /**
+     * Copies an image's pixels into a new frame and draws
+     * seams over it.
+     **/
+    private static BufferedImage snapshot( final UWECImage IM,
+                                           final int[][]   SEAMS,
+                                           final boolean   HORIZONTAL )
+    {
+        /* Local Constants */
+        final int WIDTH  = IM.getWidth();
+        final int HEIGHT = IM.getHeight();
+        
+        /* Local Variables */
+        BufferedImage frame = new BufferedImage( WIDTH, HEIGHT,
+                                                 BufferedImage.TYPE_INT_RGB );
+        int[]         out   =
+            ( (DataBufferInt)frame.getRaster().getDataBuffer() ).getData();
+        
+        /* Copy Pixels */
+        for ( int y = 0; y < HEIGHT; y++ )
+            System.arraycopy( IM.getPixels(), y * IM.getStride(),
+                              out, y * WIDTH, WIDTH );
+        
+        /* Draw Seams */
+        if ( null != SEAMS )
+            for ( int[] seam : SEAMS )
+                for ( int j = 0; j < seam.length; j++ )
+                    out[HORIZONTAL ? seam[j] * WIDTH + j :
+                                     j * WIDTH + seam[j]] = RED;
+        return frame;
+    }
+    
+    /**
+     * Builds the window and starts polling for frames; runs on
+     * the event thread.
+     **/
+    private void open( final int FPS )
+    {
+        panel = new JPanel()
+        {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected void paintComponent( Graphics g )
+            {
+                super.paintComponent( g );
+                if ( null != current )
+                    g.drawImage( current, 0, 0, null );
+            }
+        };
+        
+        window = new JFrame( "Image Viewer" );
+        window.setDefaultCloseOperation( JFrame.EXIT_ON_CLOSE );
+        window.getContentPane().add( panel );
+        
+        new Timer( Math.max( 1, 1000 / FPS ), e -> poll() ).start();
+    }
+    
+    /**
+     * Draws the pending frame, if any, and asks for the next;
+     * runs on the event thread.
+     **/
+    private void poll()
+    {
+        /* Local Constants */
+        final BufferedImage FRAME = PENDING.getAndSet( null );
+        
+        if ( null == FRAME )
+            return;
+        
+        if ( null == current ||
+             FRAME.getWidth()  != current.getWidth() ||
+             FRAME.getHeight() != current.getHeight() )
+        {
+            panel.setPreferredSize( new Dimension( FRAME.getWidth(),
+                                                   FRAME.getHeight() ) );
+            window.pack();
+            window.setVisible( true );
+        }
+        current = FRAME;
+        panel.repaint();
+        wanted = true;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Class to carry out randomized differential testing of the
+ * incremental path weight update against a full recompute.
+ */
+
+import java.util.Random;
+
+public class SeamDriver
+{
+	public static void main( String... args )
+	{
+		/* Local Variables */
+		long seed    = 0 < args.length ? Long.parseLong( args[0] ) :
+		                                 System.nanoTime();
+		int trials   = 1 < args.length ? Integer.parseInt( args[1] ) : 500;
+		Random random = new Random( seed );
+		Seam s = new Seam();
+		int failures = 0;
+		int seams    = 0;
+		
+		/* Testing */
+		System.out.println( "seed " + seed );
+		for ( int t = 0; t < trials; t++ )
+		{
+			int width  = 2 + random.nextInt( 160 );
+			int height = 1 + random.nextInt( 120 );
+			int colors = 1 + random.nextInt( 1 == random.nextInt( 2 ) ? 4 : 256 );
+			int[] pixels  = new int[width * height];
+			int[] palette = new int[colors];
+			SeamMaps full = new SeamMaps( width, height, false );
+			SeamMaps inc  = new SeamMaps( width, height, false );
+			EnergyFunction energy = ScalarEnergy.values()[
+				random.nextInt( ScalarEnergy.values().length )];
+			
+			s.setEnergyFunction( energy );
+			
+			/* Few Colors Make Many Ties */
+			for ( int c = 0; c < colors; c++ )
+				palette[c] = random.nextInt( 0x1000000 );
+			for ( int p = 0; p < pixels.length; p++ )
+				pixels[p] = palette[random.nextInt( colors )];
+			
+			Seam.energyRows( energy, pixels, 1, width,
+			                 full, 0, height );
+			Seam.energyRows( energy, pixels, 1, width,
+			                 inc,  0, height );
+			s.getPathWeights( full );
+			s.getPathWeights( inc );
+			
+			for ( int span = width; 1 < span; )
+			{
+				/* Either the Minimum Seam or Any Seam */
+				int[] seam = random.nextBoolean() ? s.getSeam( full ) :
+				                                    randomSeam( random, span,
+				                                                height );
+				
+				for ( int j = 0; j < height; j++ )
+					System.arraycopy( pixels, j * width + seam[j] + 1,
+					                  pixels, j * width + seam[j],
+					                  span - seam[j] - 1 );
+				span--;
+				seams++;
+				
+				full.span = span;
+				inc.span  = span;
+				Seam.energyRows( energy, pixels, 1, width,
+				                 full, 0, height );
+				Seam.energyRows( energy, pixels, 1, width,
+				                 inc,  0, height );
+				s.getPathWeights( full );
+				s.getPathWeights( inc, seam );
+				
+				int row = firstMismatch( full, inc );
+				if ( 0 <= row )
+				{
+					System.out.println( "trial " + t + " (" + width + "x" +
+					                    height + ", " + colors + " colors, " +
+					                    Energies.getName( energy ) +
+					                    "): mismatch in row " + row +
+					                    " at width " + span );
+					failures++;
+					break;
+				}
+			}
+		}
+		System.out.println( trials + " trials, " + seams + " seams, " +
+		                    failures + " mismatches" );
+		System.exit( 0 == failures ? 0 : 1 );
+	}
+	
+	/**
+	 * Returns a random connected vertical seam.
+	 **/
+	private static int[] randomSeam( Random random, int span, int height )
+	{
+		int[] seam = new int[height];
+		
+		seam[0] = random.nextInt( span );
+		for ( int j = 1; j < height; j++ )
+			seam[j] = Math.max( 0, Math.min( span - 1,
+			                    seam[j-1] + random.nextInt( 3 ) - 1 ) );
+		return seam;
+	}
+	
+	/**
+	 * Returns the first row in which two sets of maps differ in
+	 * a path weight or a direction, or -1 if they agree.
+	 **/
+	private static int firstMismatch( SeamMaps a, SeamMaps b )
+	{
+		for ( int j = 0; j < a.LENGTH; j++ )
+			for ( int i = 0; i < a.span; i++ )
+			{
+				int at = j * a.STRIDE + i;
+				if ( a.PATH_WEIGHTS[at] != b.PATH_WEIGHTS[at] ||
+				     ( 0 < j && a.DIRS[at] != b.DIRS[at] ) )
+					return j;
+			}
+		return -1;
+	}
+}
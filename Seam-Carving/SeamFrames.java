@@ -0,0 +1,199 @@
+/*
+ * Class to seam-carve the numbered frames of a video without a
+ * display, keeping the seams steady from frame to frame.
+ */
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class SeamFrames
+{
+	/* Class Constants */
+	/**
+	 * The most frames decoded ahead of the one being carved.
+	 **/
+	private static final int FRAMES_AHEAD = 4;
+	
+	/**
+	 * One frame to resize and what happened to it.
+	 **/
+	private static class Frame extends ImagePipeline.Item
+	{
+		long recomputed;
+		int moved;
+		long carveNs;
+		
+		Frame( File input, File output )
+		{
+			super( input, output );
+		}
+	}
+	
+	public static void main( String... args )
+	{
+		/* Local Variables */
+		File source;
+		File outDir;
+		File[] files;
+		List<Frame> frames = new ArrayList<>();
+		int newWidth  = -1;
+		int newHeight = -1;
+		int threshold = 8;
+		String energy = Energies.DEFAULT;
+		Seam s = new Seam();
+		long start;
+		
+		/* Stay Off the Display */
+		System.setProperty( "java.awt.headless", "true" );
+		
+		/* Get Parameters */
+		if ( 2 > args.length || args[0].equals( "-h" ) )
+			help();
+		
+		source = new File( args[0] );
+		outDir = new File( args[1] );
+		
+		for ( int i = 2; i < args.length; i++ )
+		{
+			switch ( args[i] )
+			{
+				case "-dim":
+					newWidth  = Integer.parseInt( args[++i] );
+					newHeight = Integer.parseInt( args[++i] );
+					break;
+				case "-e":
+					energy = args[++i];
+					break;
+				case "-h":
+					help();
+					break;
+				case "-t":
+					threshold = Integer.parseInt( args[++i] );
+					break;
+				default:
+					System.out.println( "unknown option: " + args[i] + "\n" +
+					                    "Run SeamFrames -h for help." );
+					System.exit(1);
+			}
+		}
+		
+		if ( !outDir.isDirectory() && !outDir.mkdirs() )
+		{
+			System.out.println( "cannot create " + outDir );
+			System.exit(1);
+		}
+		
+		/* List Frames, frame9 Before frame10 */
+		files = source.listFiles( f -> f.isFile() &&
+		                               ImagePipeline.canRead( f ) );
+		if ( null == files )
+		{
+			System.out.println( "cannot list " + source );
+			System.exit(1);
+		}
+		Arrays.sort( files, Comparator.comparingInt(
+		                        ( File f ) -> f.getName().length() )
+		                    .thenComparing( File::getName ) );
+		for ( File f : files )
+			frames.add( new Frame( f, new File( outDir, f.getName() ) ) );
+		
+		/* Resize Frames */
+		s.setEnergyFunction( Energies.get( energy ) );
+		start = System.nanoTime();
+		run( frames, new SequenceCarver( s, threshold ), newWidth, newHeight );
+		report( frames, System.nanoTime() - start );
+	}
+	
+	/**
+	 * Resizes every frame in order. Decoding, carving and encoding
+	 * each run on a thread of their own, so the next frames are
+	 * being read and the last written while one is carved. Frames
+	 * are carved one at a time since each builds on the last.
+	 **/
+	private static void run( List<Frame> frames, final SequenceCarver CARVER,
+	                         final int NEW_WIDTH, final int NEW_HEIGHT )
+	{
+		ImagePipeline.run( frames, 1, 1, FRAMES_AHEAD,
+		                   ( frame, im ) -> carve( frame, im, CARVER,
+		                                           NEW_WIDTH, NEW_HEIGHT ) );
+	}
+	
+	private static UWECImage carve( Frame frame, UWECImage im,
+	                                SequenceCarver carver,
+	                                int newWidth, int newHeight )
+	{
+		long start = System.nanoTime();
+		
+		if ( 0 > newWidth )
+			newWidth  = im.getWidth()  - im.getWidth()  / 4;
+		if ( 0 > newHeight )
+			newHeight = im.getHeight() - im.getHeight() / 4;
+		
+		im = carver.carve( im, newWidth, newHeight );
+		frame.recomputed = carver.getRecomputed();
+		frame.moved      = carver.getSeamsMoved();
+		frame.carveNs    = System.nanoTime() - start;
+		return im;
+	}
+	
+	/**
+	 * Prints, for every frame, how much of its maps had to be
+	 * recomputed and how many seams moved since the frame before,
+	 * and exits with an error if any frame failed.
+	 **/
+	private static void report( List<Frame> frames, long wallNs )
+	{
+		/* Local Variables */
+		int failed = 0;
+		
+		System.out.printf( "%-32s %12s %7s %9s%n", "frame", "recomputed",
+		                   "moved", "carve ms" );
+		for ( Frame frame : frames )
+		{
+			if ( null != frame.error )
+			{
+				failed++;
+				System.out.printf( "%-32s FAILED: %s%n",
+				                   frame.INPUT.getName(), frame.error );
+				continue;
+			}
+			System.out.printf( "%-32s %12d %7d %9.1f%n", frame.INPUT.getName(),
+			                   frame.recomputed, frame.moved,
+			                   frame.carveNs / 1e6 );
+		}
+		System.out.printf( "%d frames, %d failed, %.1f ms wall time%n",
+		                   frames.size(), failed, wallNs / 1e6 );
+		if ( 0 < failed )
+			System.exit(1);
+	}
+	
+	public static void help()
+	{
+		String output =
+		"Usage: SeamFrames <dir> <outdir> [-options]\n" +
+		"   Or\n" +
+		"       SeamFrames -h\n" +
+		"Resizes the frames of a video, exported as numbered images\n" +
+		"in <dir>, writing the results to <outdir>. Each frame starts\n" +
+		"from the seams of the one before, so seams only move where\n" +
+		"the picture changes. Frames named *.rawi are read and\n" +
+		"written as raw packed pixels, with no decoding or encoding.\n" +
+		"where options include:\n\t" +
+		"-dim <width> <height>\n\t\t" +
+		        "The new dimensions of every frame, less than twice\n\t\t" +
+		        "its own. Defaults are 75% of the original.\n\t" +
+		"-e <energy>\n\t\t" +
+		        "The energy function to carve by (see SeamDemo -h).\n\t" +
+		"-h\n\t\t" +
+		        "This help text.\n\t" +
+		"-t <threshold>\n\t\t" +
+		        "How much a channel of a pixel may change (0 to 255)\n\t\t" +
+		        "before it counts as changed. Default is 8; 0 carves\n\t\t" +
+		        "every frame from scratch.\n\t";
+		System.out.println( output );
+		System.exit( 0 );
+	}
+}
@@ -0,0 +1,19 @@
+/**
+ * Interface for objects that want to know which seams a Seam
+ * removes from an image.
+ **/
+
+public interface SeamListener
+{
+    /**
+     * Called after one or more seams have been removed from an
+     * image in a single sweep.
+     * 
+     * @param seams
+     *      the seams, all in the coordinates of the image before
+     *      the sweep, cheapest first.
+     * @param horizontal
+     *      whether the seams were horizontal.
+     **/
+    public void seamsRemoved( int[][] seams, boolean horizontal );
+}
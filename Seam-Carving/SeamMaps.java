@@ -0,0 +1,104 @@
+/**
+ * Class to hold the maps used to find a seam, stored as flat
+ * row-major arrays so they can be reused from seam to seam.
+ * <p>
+ * A row runs across the seam direction: for vertical seams
+ * row j is image row j, for horizontal seams it is image
+ * column j. Entry i of row j lives at j * STRIDE + i.
+ **/
+
+class SeamMaps
+{
+    /* Instance Constants */
+    /**
+     * The number of entries between the starts of two rows.
+     **/
+    final int STRIDE;
+    /**
+     * The number of rows (the length of a seam).
+     **/
+    final int LENGTH;
+    /**
+     * Whether PATH_WEIGHTS only holds two alternating rows.
+     **/
+    final boolean ROLLING;
+    
+    final int[]  ENERGY;
+    final int[]  PATH_WEIGHTS;
+    final byte[] DIRS;
+    /**
+     * Room for one row of old path weights while a row is
+     * updated in place.
+     **/
+    final int[]  SPARE_ROW;
+    
+    /* Instance Variables */
+    /**
+     * The number of entries in use in each row. This shrinks
+     * as seams are removed while STRIDE stays put.
+     **/
+    int span;
+    /**
+     * The extra cost of a seam stepping into each pixel from
+     * above and to the left, and from above and to the right,
+     * laid out like ENERGY; null unless the energy function
+     * charges steps.
+     **/
+    int[] stepLeft;
+    int[] stepRight;
+    
+    /*== Constructors ==*/
+    
+    /**
+     * Constructs a set of maps for a given size.
+     * 
+     * @param SPAN
+     *      the number of pixels across the seam direction.
+     * @param LENGTH
+     *      the number of pixels along the seam direction.
+     * @param ROLLING
+     *      whether to keep only two rows of path weights.
+     **/
+    SeamMaps( final int SPAN, final int LENGTH, final boolean ROLLING )
+    {
+        this.STRIDE       = SPAN;
+        this.LENGTH       = LENGTH;
+        this.ROLLING      = ROLLING;
+        this.ENERGY       = new int[SPAN * LENGTH];
+        this.PATH_WEIGHTS = new int[SPAN * ( ROLLING ? 2 : LENGTH )];
+        this.DIRS         = new byte[SPAN * LENGTH];
+        this.SPARE_ROW    = new int[SPAN];
+        this.span         = SPAN;
+    }
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Makes room for step costs if there is none yet. Energy
+     * functions that charge steps call this before filling a
+     * row, and rows may be filled on several threads at once.
+     **/
+    synchronized void chargeSteps()
+    {
+        if ( null == stepLeft )
+        {
+            stepLeft  = new int[ENERGY.length];
+            stepRight = new int[ENERGY.length];
+        }
+    }
+    
+    /*== Accessors ==*/
+    
+    /**
+     * Returns where row J starts in PATH_WEIGHTS.
+     * 
+     * @param J
+     *      the row.
+     * @return
+     *      the offset of the row.
+     **/
+    int weightRow( final int J )
+    {
+        return ( ROLLING ? J & 1 : J ) * STRIDE;
+    }
+}
@@ -0,0 +1,311 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class to collect where the time of a resize goes, phase by
+ * phase, for a Seam and the images it carves.
+ * <p>
+ * Every timed call adds to its phase's call count, total time
+ * and pixel count, and to a histogram of call times with one
+ * bucket per power of two nanoseconds. Seam also counts the
+ * seams it removes or inserts and the bytes its calling thread
+ * allocated doing so; work done on the fork/join pool is timed
+ * but its allocation is not counted. While a flight recording
+ * with the seam.Phase event enabled is running, every timed
+ * call from Seam and UWECImage is also recorded as a
+ * PhaseEvent spanning the call.
+ * <p>
+ * A SeamMetrics may be shared by several Seams and images on
+ * different threads.
+ **/
+
+public class SeamMetrics
+{
+    /**
+     * The phases of a resize that are timed.
+     **/
+    public enum Phase
+    {
+        /** Filling or updating energy maps. **/
+        ENERGY,
+        /** Filling or updating path weight and direction maps. **/
+        PATH_WEIGHTS,
+        /** Tracing seams back up the direction map. **/
+        TRACE,
+        /** Finding a seam coarse to fine on a pyramid. **/
+        SEARCH,
+        /** Removing or inserting seams in an image. **/
+        SHRINK,
+        /** Transposing an image. **/
+        TRANSPOSE,
+        /** Updating an image's window or handing a SeamDisplay a frame. **/
+        REPAINT
+    }
+    
+    /* Class Constants */
+    /**
+     * The number of histogram buckets per phase; bucket b holds
+     * calls that took [2^b, 2^(b+1)) nanoseconds.
+     **/
+    private static final int BUCKETS = 64;
+    private static final Phase[] PHASES = Phase.values();
+    /**
+     * Reads per-thread allocation, or null if the JVM cannot.
+     **/
+    private static final com.sun.management.ThreadMXBean THREADS =
+        loadThreads();
+    
+    /* Instance Constants */
+    private final LongAdder[]     CALLS;
+    private final LongAdder[]     NANOS;
+    private final LongAdder[]     PIXELS;
+    private final AtomicLongArray HISTOGRAM;
+    private final LongAdder       SEAMS;
+    private final LongAdder       ALLOCATED;
+    private final long            CREATED;
+    
+    /*== Constructors ==*/
+    
+    /**
+     * Constructs a SeamMetrics with every count at zero.
+     **/
+    public SeamMetrics()
+    {
+        this.CALLS     = adders( PHASES.length );
+        this.NANOS     = adders( PHASES.length );
+        this.PIXELS    = adders( PHASES.length );
+        this.HISTOGRAM = new AtomicLongArray( PHASES.length * BUCKETS );
+        this.SEAMS     = new LongAdder();
+        this.ALLOCATED = new LongAdder();
+        this.CREATED   = System.nanoTime();
+    }
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Records one call of a phase.
+     * 
+     * @param PHASE
+     *      the phase.
+     * @param START
+     *      the System.nanoTime() the call started at.
+     * @param PIXELS
+     *      the pixels the call covered.
+     **/
+    public void record( final Phase PHASE,
+                        final long  START,
+                        final long  PIXELS )
+    {
+        record( PHASE, START, null, PIXELS );
+    }
+    
+    /**
+     * Records one call of a phase, committing its JFR event.
+     * 
+     * @param PHASE
+     *      the phase.
+     * @param START
+     *      the System.nanoTime() the call started at.
+     * @param EVENT
+     *      what PhaseEvent.start() returned as the call started,
+     *      or null.
+     * @param PIXELS
+     *      the pixels the call covered.
+     **/
+    void record( final Phase      PHASE,
+                 final long       START,
+                 final PhaseEvent EVENT,
+                 final long       PIXELS )
+    {
+        /* Local Constants */
+        final long NANOS = System.nanoTime() - START;
+        final int  P     = PHASE.ordinal();
+        
+        this.CALLS[P].increment();
+        this.NANOS[P].add( NANOS );
+        this.PIXELS[P].add( PIXELS );
+        HISTOGRAM.incrementAndGet( P * BUCKETS + bucket( NANOS ) );
+        
+        if ( null != EVENT )
+        {
+            EVENT.phase  = PHASE.name();
+            EVENT.pixels = PIXELS;
+            EVENT.commit();
+        }
+    }
+    
+    /**
+     * Records seams removed or inserted, and the bytes the
+     * calling thread allocated since a given reading.
+     * 
+     * @param COUNT
+     *      the number of seams.
+     * @param ALLOCATED
+     *      what allocatedBytes() returned before the seams were
+     *      found.
+     **/
+    public void recordSeams( final int COUNT, final long ALLOCATED )
+    {
+        SEAMS.add( COUNT );
+        if ( 0 <= ALLOCATED )
+            this.ALLOCATED.add( allocatedBytes() - ALLOCATED );
+    }
+    
+    /*== Accessors ==*/
+    
+    /**
+     * Returns the number of calls of a phase.
+     **/
+    public long getCalls( final Phase PHASE )
+    {
+        return CALLS[PHASE.ordinal()].sum();
+    }
+    
+    /**
+     * Returns the total time spent in a phase (in ns).
+     **/
+    public long getNanos( final Phase PHASE )
+    {
+        return NANOS[PHASE.ordinal()].sum();
+    }
+    
+    /**
+     * Returns the pixels a phase covered per second of its own
+     * time, or 0 if it never ran.
+     **/
+    public double getPixelsPerSecond( final Phase PHASE )
+    {
+        /* Local Constants */
+        final long NANOS = getNanos( PHASE );
+        
+        return 0 == NANOS ? 0.0 : PIXELS[PHASE.ordinal()].sum() * 1e9 / NANOS;
+    }
+    
+    /**
+     * Returns the number of seams removed or inserted.
+     **/
+    public long getSeams()
+    {
+        return SEAMS.sum();
+    }
+    
+    /**
+     * Returns the bytes allocated per seam removed or inserted,
+     * or -1 if the JVM does not count allocation.
+     **/
+    public double getBytesPerSeam()
+    {
+        if ( null == THREADS )
+            return -1;
+        return 0 == getSeams() ? 0.0 : (double)ALLOCATED.sum() / getSeams();
+    }
+    
+    /**
+     * Returns everything recorded as a JSON object.
+     **/
+    public String toJson()
+    {
+        /* Local Variables */
+        StringBuilder json = new StringBuilder();
+        
+        json.append( "{\n" )
+            .append( "  \"wallNanos\": " )
+            .append( System.nanoTime() - CREATED )
+            .append( ",\n  \"seams\": " ).append( getSeams() )
+            .append( ",\n  \"bytesPerSeam\": " )
+            .append( format( getBytesPerSeam() ) )
+            .append( ",\n  \"phases\": {" );
+        for ( Phase phase : PHASES )
+        {
+            /* Block Variables */
+            String separator = "";
+            
+            json.append( Phase.ENERGY == phase ? "\n" : ",\n" )
+                .append( "    \"" )
+                .append( phase.name().toLowerCase( Locale.ROOT ) )
+                .append( "\": {\n" )
+                .append( "      \"calls\": " ).append( getCalls( phase ) )
+                .append( ",\n      \"nanos\": " ).append( getNanos( phase ) )
+                .append( ",\n      \"pixels\": " )
+                .append( PIXELS[phase.ordinal()].sum() )
+                .append( ",\n      \"pixelsPerSecond\": " )
+                .append( format( getPixelsPerSecond( phase ) ) )
+                .append( ",\n      \"histogram\": [" );
+            for ( int b = 0; b < BUCKETS; b++ )
+            {
+                /* Block Variables */
+                long count = HISTOGRAM.get( phase.ordinal() * BUCKETS + b );
+                
+                if ( 0 == count )
+                    continue;
+                json.append( separator )
+                    .append( "\n        { \"fromNanos\": " )
+                    .append( 1L << b )
+                    .append( ", \"count\": " ).append( count ).append( " }" );
+                separator = ",";
+            }
+            json.append( separator.isEmpty() ? "]" : "\n      ]" )
+                .append( "\n    }" );
+        }
+        return json.append( "\n  }\n}\n" ).toString();
+    }
+    
+    /**
+     * Returns the bytes the calling thread has allocated so far,
+     * or -1 if the JVM does not count them.
+     **/
+    public static long allocatedBytes()
+    {
+        return null == THREADS ? -1 :
+               THREADS.getThreadAllocatedBytes(
+                   Thread.currentThread().getId() );
+    }
+    
+    /**
+     * Returns the histogram bucket of a call time.
+     **/
+    private static int bucket( final long NANOS )
+    {
+        return 63 - Long.numberOfLeadingZeros( Math.max( NANOS, 1 ) );
+    }
+    
+    private static String format( final double VALUE )
+    {
+        return String.format( Locale.ROOT, "%.1f", VALUE );
+    }
+    
+    private static LongAdder[] adders( final int COUNT )
+    {
+        /* Local Variables */
+        LongAdder[] adders = new LongAdder[COUNT];
+        
+        for ( int i = 0; i < COUNT; i++ )
+            adders[i] = new LongAdder();
+        return adders;
+    }
+    
+    /**
+     * Returns the HotSpot thread bean if it counts allocation,
+     * turning the count on if need be, otherwise null.
+     **/
+    private static com.sun.management.ThreadMXBean loadThreads()
+    {
+        /* Local Constants */
+        final ThreadMXBean BEAN = ManagementFactory.getThreadMXBean();
+        
+        if ( !( BEAN instanceof com.sun.management.ThreadMXBean ) )
+            return null;
+        
+        /* Local Variables */
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)BEAN;
+        
+        if ( !threads.isThreadAllocatedMemorySupported() )
+            return null;
+        threads.setThreadAllocatedMemoryEnabled( true );
+        return threads;
+    }
+}
@@ -0,0 +1,305 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to find seams coarse to fine on a pyramid of halved
+ * copies of an image.
+ * <p>
+ * Only the coarsest level gets a full energy and DP pass, and
+ * only when a seam has been taken out of it since its last
+ * one. Each finer level is searched within RADIUS pixels of
+ * the seam found on the level above, scaled up to it, so a
+ * seam costs about 2 * RADIUS + 1 pixels per row per level
+ * instead of the whole row. The seams found are not always
+ * the cheapest; a wider band finds cheaper seams more slowly.
+ * <p>
+ * To keep the levels in step with the image, level l loses
+ * the seam last found on it once every 2^l seams taken out of
+ * the image.
+ **/
+
+class SeamPyramid
+{
+    /* Class Constants */
+    /**
+     * The smallest span or length a level above the image may
+     * start with (in pixels).
+     **/
+    static final int MIN_LEVEL = 128;
+    /**
+     * The path weight that keeps a seam from stepping outside
+     * the band of the row above, left short of the largest int
+     * so that adding a step cost to it cannot wrap around.
+     **/
+    private static final int WALL = Integer.MAX_VALUE - ( 1 << 20 );
+    
+    /* Instance Constants */
+    private final boolean        HORIZONTAL;
+    private final EnergyFunction FUNCTION;
+    private final int            RADIUS;
+    /**
+     * The levels, finest first; level 0 is the image itself.
+     **/
+    private final UWECImage[]    LEVELS;
+    private final SeamMaps[]     MAPS;
+    /**
+     * The seam last found on each level.
+     **/
+    private final int[][]        SEAMS;
+    
+    /* Instance Variables */
+    /**
+     * The number of seams taken out of the image so far.
+     **/
+    private int     removed;
+    /**
+     * Whether the coarsest level has changed since its seam
+     * was found.
+     **/
+    private boolean stale;
+    /**
+     * The energy of the seam last found on the image.
+     **/
+    private long    cost;
+    
+    /*== Constructors ==*/
+    
+    /**
+     * Builds a pyramid over a given image, halving it until
+     * another halving would leave a level smaller than
+     * MIN_LEVEL either way.
+     * 
+     * @param IM
+     *      the image; seams found are removed from it by the
+     *      caller, who then calls seamRemoved().
+     * @param HORIZONTAL
+     *      whether to find horizontal seams.
+     * @param FUNCTION
+     *      the energy function.
+     * @param RADIUS
+     *      the pixels either side of the scaled-up seam that
+     *      are searched on each finer level.
+     **/
+    SeamPyramid( final UWECImage      IM,
+                 final boolean        HORIZONTAL,
+                 final EnergyFunction FUNCTION,
+                 final int            RADIUS )
+    {
+        /* Local Variables */
+        List<UWECImage> levels = new ArrayList<>();
+        UWECImage       level  = IM;
+        
+        /* Build Levels */
+        levels.add( IM );
+        while ( ( level.getWidth()  + 1 ) / 2 >= MIN_LEVEL &&
+                ( level.getHeight() + 1 ) / 2 >= MIN_LEVEL )
+        {
+            level = level.halve();
+            levels.add( level );
+        }
+        
+        this.HORIZONTAL = HORIZONTAL;
+        this.FUNCTION   = FUNCTION;
+        this.RADIUS     = RADIUS;
+        this.LEVELS     = levels.toArray( new UWECImage[0] );
+        this.MAPS       = new SeamMaps[LEVELS.length];
+        this.SEAMS      = new int[LEVELS.length][];
+        this.stale      = true;
+        
+        for ( int l = 0; l < LEVELS.length; l++ )
+            MAPS[l] = HORIZONTAL ?
+                      new SeamMaps( LEVELS[l].getHeight(),
+                                    LEVELS[l].getWidth(), true ) :
+                      new SeamMaps( LEVELS[l].getWidth(),
+                                    LEVELS[l].getHeight(), true );
+    }
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Finds the next seam to remove from the image.
+     * 
+     * @return
+     *      the seam.
+     **/
+    int[] findSeam()
+    {
+        /* Local Constants */
+        final int COARSEST = LEVELS.length-1;
+        
+        if ( stale )
+        {
+            search( COARSEST, null );
+            stale = false;
+        }
+        for ( int l = COARSEST-1; l >= 0; l-- )
+            search( l, SEAMS[l+1] );
+        
+        cost = MAPS[0].PATH_WEIGHTS[MAPS[0].weightRow( MAPS[0].LENGTH-1 ) +
+                                    SEAMS[0][MAPS[0].LENGTH-1]];
+        return SEAMS[0];
+    }
+    
+    /**
+     * Records that the seam last found has been removed from
+     * the image, and removes seams from the levels above it
+     * that are due to lose one.
+     **/
+    void seamRemoved()
+    {
+        removed++;
+        for ( int l = 1; l < LEVELS.length; l++ )
+            if ( 0 == removed % ( 1 << l ) )
+            {
+                if ( HORIZONTAL )
+                    LEVELS[l].removeHorizontalSeam( SEAMS[l] );
+                else
+                    LEVELS[l].removeVerticalSeam( SEAMS[l] );
+            }
+        stale = 0 == removed % ( 1 << ( LEVELS.length-1 ) );
+    }
+    
+    /*== Accessors ==*/
+    
+    /**
+     * Returns the number of levels, counting the image.
+     **/
+    int getLevels()
+    {
+        return LEVELS.length;
+    }
+    
+    /**
+     * Returns the energy of the seam last found.
+     **/
+    long getCost()
+    {
+        return cost;
+    }
+    
+    /**
+     * Finds the cheapest seam on one level, either over the
+     * whole level or within the band around a seam from the
+     * level above. Energy is computed afresh for the pixels
+     * searched only.
+     * <p>
+     * The scaled seam is kept connected, so the band of each
+     * row reaches at most one pixel beyond that of the row
+     * above and every pixel in it has a neighbor above in the
+     * band; the two pixels past either end of the band above
+     * are walled off.
+     * 
+     * @param LEVEL
+     *      the level.
+     * @param COARSE
+     *      the seam found on the level above, or null to search
+     *      the whole level.
+     **/
+    private void search( final int LEVEL, final int[] COARSE )
+    {
+        /* Local Constants */
+        final UWECImage IM           = LEVELS[LEVEL];
+        final SeamMaps  maps         = MAPS[LEVEL];
+        final int       SPAN         = HORIZONTAL ? IM.getHeight() :
+                                                    IM.getWidth();
+        final int       LENGTH       = maps.LENGTH;
+        final int       ACROSS       = HORIZONTAL ? IM.getStride() : 1;
+        final int       ALONG        = HORIZONTAL ? 1 : IM.getStride();
+        final int[]     PATH_WEIGHTS = maps.PATH_WEIGHTS;
+        final int       LAST         = maps.weightRow( LENGTH-1 );
+        
+        /* Local Variables */
+        int[] seam  = new int[LENGTH];
+        int   guide = 0;
+        int   from  = 0;
+        int   to    = SPAN;
+        
+        /* Calculate Path Weights in the Band */
+        maps.span = SPAN;
+        for ( int j = 0; j < LENGTH; j++ )
+        {
+            /* Block Variables */
+            int prevFrom = from;
+            int prevTo   = to;
+            
+            if ( null != COARSE )
+            {
+                /* Block Variables */
+                int scaled = scale( COARSE, MAPS[LEVEL+1], j, LENGTH, SPAN );
+                
+                guide = 0 == j ? scaled :
+                        Math.max( guide-1, Math.min( scaled, guide+1 ) );
+                guide = Math.max( 0, Math.min( guide, SPAN-1 ) );
+                from  = Math.max( 0, guide - RADIUS );
+                to    = Math.min( SPAN, guide + RADIUS + 1 );
+            }
+            
+            FUNCTION.energyRow( IM.getPixels(), ACROSS, ALONG, maps, j,
+                                from, to );
+            if ( 0 == j )
+                System.arraycopy( maps.ENERGY, from,
+                                  PATH_WEIGHTS, from, to - from );
+            else
+            {
+                wall( PATH_WEIGHTS, maps.weightRow( j-1 ),
+                      prevFrom - 2, prevFrom, SPAN );
+                wall( PATH_WEIGHTS, maps.weightRow( j-1 ),
+                      prevTo, prevTo + 2, SPAN );
+                Seam.pathWeightRow( maps, j, maps.weightRow( j-1 ),
+                                    maps.weightRow( j ), from, to );
+            }
+        }
+        
+        /* Trace Seam */
+        seam[LENGTH-1] = from;
+        for ( int i = from+1; i < to; i++ )
+            if ( PATH_WEIGHTS[LAST + i] < PATH_WEIGHTS[LAST + seam[LENGTH-1]] )
+                seam[LENGTH-1] = i;
+        for ( int j = LENGTH-1; j > 0; j-- )
+            seam[j-1] = seam[j] + maps.DIRS[j * maps.STRIDE + seam[j]];
+        SEAMS[LEVEL] = seam;
+    }
+    
+    /**
+     * Scales the seam from the level above to row J of a level,
+     * mapping pixel centers to pixel centers.
+     * 
+     * @param COARSE
+     *      the seam from the level above.
+     * @param ABOVE
+     *      the maps of the level above.
+     * @param J
+     *      the row on this level.
+     * @param LENGTH
+     *      the number of rows on this level.
+     * @param SPAN
+     *      the number of pixels per row on this level.
+     * @return
+     *      the pixel of row J under the coarse seam.
+     **/
+    private static int scale( final int[]    COARSE,
+                              final SeamMaps ABOVE,
+                              final int      J,
+                              final int      LENGTH,
+                              final int      SPAN )
+    {
+        /* Local Constants */
+        final int CROSS = COARSE[(int)( (long)J * ABOVE.LENGTH / LENGTH )];
+        
+        return (int)( ( 2L * CROSS + 1 ) * SPAN / ( 2L * ABOVE.span ) );
+    }
+    
+    /**
+     * Sets the path weights of pixels [FROM, TO) of a row,
+     * clipped to the row, to WALL.
+     **/
+    private static void wall( final int[] PATH_WEIGHTS,
+                              final int   ROW,
+                              final int   FROM,
+                              final int   TO,
+                              final int   SPAN )
+    {
+        for ( int i = Math.max( FROM, 0 ); i < Math.min( TO, SPAN ); i++ )
+            PATH_WEIGHTS[ROW + i] = WALL;
+    }
+}
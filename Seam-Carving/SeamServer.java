@@ -0,0 +1,581 @@
+/*
+ * Class to serve seam-carved resizes over HTTP on the loopback
+ * interface, caching results so repeat requests are not carved
+ * again.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SeamServer
+{
+	/* Class Constants */
+	private static final int DEFAULT_PORT = 8335;
+	/**
+	 * The largest request body accepted (in bytes).
+	 **/
+	private static final int MAX_BODY = 32 << 20;
+	/**
+	 * The most pixels an image may have, as sent or as asked for.
+	 **/
+	private static final long MAX_PIXELS = 1L << 24;
+	/**
+	 * How many times its own width or height an image may grow to.
+	 **/
+	private static final int MAX_GROWTH = 2;
+	
+	/**
+	 * A map that forgets its least recently used entries once
+	 * their total weight (in bytes) passes a limit.
+	 **/
+	private static class Cache<V>
+	{
+		final long LIMIT;
+		final LinkedHashMap<String, V> ENTRIES =
+			new LinkedHashMap<>( 16, 0.75f, true );
+		final Map<String, Long> WEIGHTS = new HashMap<>();
+		long weight;
+		
+		Cache( long limit )
+		{
+			this.LIMIT = limit;
+		}
+		
+		synchronized V get( String key )
+		{
+			return ENTRIES.get( key );
+		}
+		
+		/**
+		 * Adds or re-weighs an entry, then evicts from the least
+		 * recently used end until the cache fits. An entry that
+		 * could never fit is not kept.
+		 **/
+		synchronized void put( String key, V value, long bytes )
+		{
+			Long old = WEIGHTS.remove( key );
+			if ( null != old )
+			{
+				weight -= old;
+				ENTRIES.remove( key );
+			}
+			if ( bytes > LIMIT )
+				return;
+			
+			ENTRIES.put( key, value );
+			WEIGHTS.put( key, bytes );
+			weight += bytes;
+			
+			Iterator<String> lru = ENTRIES.keySet().iterator();
+			while ( weight > LIMIT )
+			{
+				weight -= WEIGHTS.remove( lru.next() );
+				lru.remove();
+			}
+		}
+		
+		synchronized String stats()
+		{
+			return "{ \"entries\": " + ENTRIES.size() + ", \"bytes\": " +
+			       weight + ", \"limit\": " + LIMIT + " }";
+		}
+	}
+	
+	/**
+	 * What is kept of one source image between requests: the
+	 * decoded pixels and, once it has been asked for at more
+	 * than one width, its retargeting index. The index is built
+	 * in the background; indexing is set while it is.
+	 **/
+	private static class Source
+	{
+		final UWECImage IMAGE;
+		final Set<Integer> WIDTHS = new HashSet<>();
+		RetargetIndex index;
+		boolean indexing;
+		
+		Source( UWECImage image )
+		{
+			this.IMAGE = image;
+		}
+		
+		long bytes()
+		{
+			return 4L * IMAGE.getWidth() * IMAGE.getHeight() *
+			       ( null == index ? 1 : 2 );
+		}
+	}
+	
+	/* Class Variables */
+	private static Cache<byte[]> outputs;
+	private static Cache<Source> sources;
+	/**
+	 * The work under way for each key, so identical requests
+	 * that arrive together share it.
+	 **/
+	private static final ConcurrentHashMap<String, CompletableFuture<Object>>
+		IN_FLIGHT = new ConcurrentHashMap<>();
+	private static final AtomicLong HITS      = new AtomicLong();
+	private static final AtomicLong MISSES    = new AtomicLong();
+	private static final AtomicLong COALESCED = new AtomicLong();
+	/**
+	 * Builds retargeting indexes one at a time, off the request
+	 * threads.
+	 **/
+	private static final ExecutorService INDEXER =
+		Executors.newSingleThreadExecutor( task -> {
+			Thread thread = new Thread( task, "indexer" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+	
+	public static void main( String... args ) throws IOException
+	{
+		/* Local Variables */
+		int port        = DEFAULT_PORT;
+		int threads     = Runtime.getRuntime().availableProcessors();
+		long outputMb   = 256;
+		long sourceMb   = 512;
+		HttpServer server;
+		
+		/* Stay Off the Display */
+		System.setProperty( "java.awt.headless", "true" );
+		
+		/* Get Parameters */
+		for ( int i = 0; i < args.length; i++ )
+		{
+			switch ( args[i] )
+			{
+				case "-c":
+					outputMb = Long.parseLong( args[++i] );
+					break;
+				case "-h":
+					help();
+					break;
+				case "-i":
+					sourceMb = Long.parseLong( args[++i] );
+					break;
+				case "-port":
+					port = Integer.parseInt( args[++i] );
+					break;
+				case "-t":
+					threads = Integer.parseInt( args[++i] );
+					break;
+				default:
+					System.out.println( "unknown option: " + args[i] + "\n" +
+					                    "Run SeamServer -h for help." );
+					System.exit(1);
+			}
+		}
+		
+		outputs = new Cache<>( outputMb << 20 );
+		sources = new Cache<>( sourceMb << 20 );
+		
+		/* Serve */
+		server = HttpServer.create( new InetSocketAddress(
+		                                InetAddress.getLoopbackAddress(),
+		                                port ), 0 );
+		server.createContext( "/resize", SeamServer::resize );
+		server.createContext( "/stats", SeamServer::stats );
+		server.setExecutor( Executors.newFixedThreadPool(
+		                        Math.max( 1, threads ) ) );
+		server.start();
+		System.out.println( "Listening on " + server.getAddress() );
+	}
+	
+	/**
+	 * Handles POST /resize?width=W&height=H[&energy=E][&format=F]
+	 * with the image as the request body.
+	 **/
+	private static void resize( HttpExchange exchange ) throws IOException
+	{
+		try
+		{
+			if ( !"POST".equals( exchange.getRequestMethod() ) )
+			{
+				send( exchange, 405, "text/plain", "POST an image\n" );
+				return;
+			}
+			
+			Map<String, String> query = query( exchange.getRequestURI() );
+			int width  = Integer.parseInt( query.get( "width" ) );
+			int height = Integer.parseInt( query.get( "height" ) );
+			String energy = Energies.getName( Energies.get(
+			                    query.getOrDefault( "energy",
+			                                        Energies.DEFAULT ) ) );
+			String format = query.getOrDefault( "format", "png" );
+			byte[] body;
+			String hash;
+			String key;
+			byte[] out;
+			
+			if ( 1 > width || 1 > height ||
+			     MAX_PIXELS < (long)width * height )
+				throw new IllegalArgumentException( "bad size: " + width +
+				                                    "x" + height );
+			if ( !ImageIO.getImageWritersByFormatName( format ).hasNext() )
+				throw new IllegalArgumentException( "no writer for " +
+				                                    format );
+			
+			try ( InputStream in = exchange.getRequestBody() )
+			{
+				body = in.readNBytes( MAX_BODY + 1 );
+			}
+			if ( MAX_BODY < body.length )
+			{
+				send( exchange, 413, "text/plain", "images are limited to " +
+				      ( MAX_BODY >> 20 ) + " MB\n" );
+				return;
+			}
+			hash = sha256( body );
+			key  = hash + "/" + energy + "/" + width + "x" + height + "." +
+			       format;
+			
+			/* Answer From the Cache, Or Join or Start the Work */
+			out = outputs.get( key );
+			if ( null != out )
+			{
+				HITS.incrementAndGet();
+				exchange.getResponseHeaders().set( "X-Cache", "hit" );
+			}
+			else
+			{
+				boolean[] joined = new boolean[1];
+				out = (byte[])coalesce( key, joined, () -> {
+					byte[] cached = outputs.get( key );
+					if ( null != cached )
+						return cached;
+					
+					byte[] bytes = encode( carve( hash, body, energy, width,
+					                              height ), format );
+					outputs.put( key, bytes, bytes.length );
+					return bytes;
+				} );
+				( joined[0] ? COALESCED : MISSES ).incrementAndGet();
+				exchange.getResponseHeaders().set( "X-Cache", joined[0] ?
+				                                   "coalesced" : "miss" );
+			}
+			send( exchange, 200, "image/" + format, out );
+		}
+		catch ( IllegalArgumentException e )
+		{
+			send( exchange, 400, "text/plain", e.getMessage() + "\n" );
+		}
+		catch ( Exception e )
+		{
+			send( exchange, 500, "text/plain", e + "\n" );
+		}
+		catch ( OutOfMemoryError e )
+		{
+			send( exchange, 503, "text/plain", "out of memory\n" );
+		}
+	}
+	
+	/**
+	 * Handles GET /stats.
+	 **/
+	private static void stats( HttpExchange exchange ) throws IOException
+	{
+		send( exchange, 200, "application/json",
+		      "{\n  \"hits\": " + HITS + ",\n  \"misses\": " + MISSES +
+		      ",\n  \"coalesced\": " + COALESCED +
+		      ",\n  \"outputs\": " + outputs.stats() +
+		      ",\n  \"sources\": " + sources.stats() + "\n}\n" );
+	}
+	
+	/**
+	 * Runs work for a key, unless the same key is already being
+	 * worked on, in which case waits for that instead.
+	 *
+	 * @param key
+	 *      what the work computes.
+	 * @param joined
+	 *      set to whether other work was waited for.
+	 * @param work
+	 *      the work.
+	 * @return
+	 *      the result.
+	 **/
+	private static Object coalesce( String key, boolean[] joined,
+	                                Callable<Object> work )
+		throws Exception
+	{
+		CompletableFuture<Object> mine = new CompletableFuture<>();
+		CompletableFuture<Object> running = IN_FLIGHT.putIfAbsent( key, mine );
+		
+		joined[0] = null != running;
+		if ( joined[0] )
+		{
+			try
+			{
+				return running.get();
+			}
+			catch ( ExecutionException e )
+			{
+				throw (Exception)e.getCause();
+			}
+		}
+		
+		try
+		{
+			Object result = work.call();
+			mine.complete( result );
+			return result;
+		}
+		catch ( Exception e )
+		{
+			mine.completeExceptionally( e );
+			throw e;
+		}
+		finally
+		{
+			IN_FLIGHT.remove( key, mine );
+		}
+	}
+	
+	/**
+	 * Resizes an image to a given size, reusing its decoded
+	 * pixels and retargeting index if they are cached. The
+	 * second time the same image is asked for at a new width
+	 * smaller than its own, its index starts building in the
+	 * background; once it is ready it replaces carving vertical
+	 * seams.
+	 **/
+	private static UWECImage carve( String hash, byte[] body, String energy,
+	                                int newWidth, int newHeight )
+		throws Exception
+	{
+		/* Local Variables */
+		String key = hash + "/" + energy;
+		boolean[] joined = new boolean[1];
+		Source source;
+		RetargetIndex index;
+		UWECImage im;
+		Seam s = new Seam();
+		
+		s.setEnergyFunction( Energies.get( energy ) );
+		s.setParallelism( 1 );
+		
+		/* Decode Once */
+		source = (Source)coalesce( key, joined, () -> {
+			Source cached = sources.get( key );
+			if ( null != cached )
+				return cached;
+			
+			Source decoded = new Source( decode( body ) );
+			sources.put( key, decoded, decoded.bytes() );
+			return decoded;
+		} );
+		
+		if ( (long)MAX_GROWTH * source.IMAGE.getWidth()  < newWidth ||
+		     (long)MAX_GROWTH * source.IMAGE.getHeight() < newHeight )
+			throw new IllegalArgumentException(
+				"cannot grow " + source.IMAGE.getWidth() + "x" +
+				source.IMAGE.getHeight() + " to " + newWidth + "x" +
+				newHeight + ", more than " + MAX_GROWTH + " times" );
+		
+		/* Index Once Several Widths Are Wanted */
+		synchronized ( source )
+		{
+			if ( newWidth < source.IMAGE.getWidth() &&
+			     source.WIDTHS.add( newWidth ) &&
+			     1 < source.WIDTHS.size() && null == source.index &&
+			     !source.indexing )
+			{
+				source.indexing = true;
+				INDEXER.execute( () -> index( key, source,
+				                              s.getEnergyFunction() ) );
+			}
+			index = source.index;
+		}
+		
+		/* Carve */
+		if ( null != index && newWidth < source.IMAGE.getWidth() )
+			im = index.retarget( source.IMAGE, newWidth );
+		else
+		{
+			im = source.IMAGE.copy();
+			s.fastVSShrink( im, Math.max( 0, im.getWidth() - newWidth ) );
+		}
+		s.fastHSShrink( im, Math.max( 0, im.getHeight() - newHeight ) );
+		s.batchVSGrow( im, Math.max( 0, newWidth  - im.getWidth() ) );
+		s.batchHSGrow( im, Math.max( 0, newHeight - im.getHeight() ) );
+		return im;
+	}
+	
+	/**
+	 * Builds the retargeting index of a cached image and caches
+	 * it alongside the image. If the build fails it is tried
+	 * again the next time the image is asked for at a new width.
+	 **/
+	private static void index( String key, Source source,
+	                           EnergyFunction energy )
+	{
+		RetargetIndex built = null;
+		Seam s = new Seam();
+		
+		s.setEnergyFunction( energy );
+		s.setParallelism( 1 );
+		try
+		{
+			built = RetargetIndex.build( source.IMAGE, s );
+		}
+		catch ( RuntimeException | OutOfMemoryError e )
+		{
+			System.err.println( "indexing " + key + " failed: " + e );
+		}
+		
+		synchronized ( source )
+		{
+			source.index    = built;
+			source.indexing = false;
+		}
+		if ( null != built )
+			sources.put( key, source, source.bytes() );
+	}
+	
+	/**
+	 * Decodes an image, checking its size before reading its
+	 * pixels so that an oversized image is turned away cheaply.
+	 **/
+	private static UWECImage decode( byte[] body ) throws IOException
+	{
+		try ( ImageInputStream in = ImageIO.createImageInputStream(
+		                                new ByteArrayInputStream( body ) ) )
+		{
+			Iterator<ImageReader> readers = ImageIO.getImageReaders( in );
+			if ( !readers.hasNext() )
+				throw new IllegalArgumentException( "unreadable image" );
+			
+			ImageReader reader = readers.next();
+			try
+			{
+				reader.setInput( in );
+				int width  = reader.getWidth( 0 );
+				int height = reader.getHeight( 0 );
+				if ( MAX_PIXELS < (long)width * height )
+					throw new IllegalArgumentException(
+						"image is " + width + "x" + height + ", more than " +
+						MAX_PIXELS + " pixels" );
+				return new UWECImage( reader.read( 0 ) );
+			}
+			finally
+			{
+				reader.dispose();
+			}
+		}
+	}
+	
+	private static byte[] encode( UWECImage im, String format )
+		throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		if ( !ImageIO.write( im.getBufferedImage(), format, out ) )
+			throw new IOException( "no writer for " + format );
+		return out.toByteArray();
+	}
+	
+	private static String sha256( byte[] bytes )
+		throws NoSuchAlgorithmException
+	{
+		StringBuilder hex = new StringBuilder();
+		
+		for ( byte b : MessageDigest.getInstance( "SHA-256" ).digest( bytes ) )
+			hex.append( String.format( "%02x", b ) );
+		return hex.toString();
+	}
+	
+	private static Map<String, String> query( URI uri )
+	{
+		Map<String, String> query = new HashMap<>();
+		
+		if ( null != uri.getQuery() )
+			for ( String pair : uri.getQuery().split( "&" ) )
+			{
+				int eq = pair.indexOf( '=' );
+				if ( 0 < eq )
+					query.put( pair.substring( 0, eq ),
+					           pair.substring( eq + 1 ) );
+			}
+		if ( !query.containsKey( "width" ) || !query.containsKey( "height" ) )
+			throw new IllegalArgumentException( "width and height are " +
+			                                    "required" );
+		return query;
+	}
+	
+	private static void send( HttpExchange exchange, int status,
+	                          String type, String text ) throws IOException
+	{
+		send( exchange, status, type, text.getBytes( "UTF-8" ) );
+	}
+	
+	private static void send( HttpExchange exchange, int status,
+	                          String type, byte[] body ) throws IOException
+	{
+		exchange.getResponseHeaders().set( "Content-Type", type );
+		exchange.sendResponseHeaders( status, body.length );
+		try ( OutputStream out = exchange.getResponseBody() )
+		{
+			out.write( body );
+		}
+	}
+	
+	public static void help()
+	{
+		String output =
+		"Usage: SeamServer [-options]\n" +
+		"   Or\n" +
+		"       SeamServer -h\n" +
+		"Serves resizes on the loopback interface only:\n\t" +
+		"POST /resize?width=W&height=H[&energy=E][&format=F]\n\t\t" +
+		        "with an image as the body returns it resized to WxH,\n\t\t" +
+		        "as F (default png). The X-Cache header says whether\n\t\t" +
+		        "the result was a cache hit, a miss, or coalesced with\n\t\t" +
+		        "an identical request already being carved.\n\t" +
+		"GET /stats\n\t\t" +
+		        "Returns cache counts as JSON.\n" +
+		"Results are cached by a hash of the image with the energy,\n" +
+		"size and format; decoded images, and their retargeting\n" +
+		"indexes once they are asked for at several widths, are\n" +
+		"cached by the hash and energy. Both caches drop their least\n" +
+		"recently used entries when full.\n" +
+		"Bodies over " + ( MAX_BODY >> 20 ) + " MB are refused. Images sent\n" +
+		"or asked for may have up to " + MAX_PIXELS + " pixels,\n" +
+		"and may grow to " + MAX_GROWTH + " times their width and height.\n" +
+		"where options include:\n\t" +
+		"-c <MB>\n\t\t" +
+		        "Memory for cached results. Default is 256.\n\t" +
+		"-h\n\t\t" +
+		        "This help text.\n\t" +
+		"-i <MB>\n\t\t" +
+		        "Memory for cached images and indexes. Default is 512.\n\t" +
+		"-port <port>\n\t\t" +
+		        "The port to listen on. Default is " + DEFAULT_PORT +
+		        ".\n\t" +
+		"-t <threads>\n\t\t" +
+		        "The number of requests handled at once. Default is\n\t\t" +
+		        "the number of processors.\n\t";
+		System.out.println( output );
+		System.exit( 0 );
+	}
+}
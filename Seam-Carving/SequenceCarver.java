@@ -0,0 +1,449 @@
+import java.util.Arrays;
+
+/**
+ * Class to resize the frames of a sequence one after another,
+ * carrying the seam maps over from each frame to the next.
+ * <p>
+ * Each direction of seams keeps a reference frame and the
+ * energy, path weight and direction maps computed from it.
+ * A pixel of a new frame only replaces its reference pixel if
+ * some channel differs by more than the threshold, and only
+ * the maps around replaced pixels are recomputed; the rest is
+ * the previous frame's work. Seams are then found on the
+ * reference, so where a scene holds still, up to noise below
+ * the threshold, its seams stay put instead of jittering.
+ * <p>
+ * With a threshold of 0 every frame is shrunk exactly as
+ * fastVSShrink and fastHSShrink would shrink it. A frame is
+ * grown by finding as many seams as it would lose to shrink
+ * by the same amount, then inserting a copy of each one.
+ **/
+
+public class SequenceCarver
+{
+    /* Instance Constants */
+    private final Seam SEAM;
+    private final int  THRESHOLD;
+    private final Pass VERTICAL_SEAMS;
+    private final Pass HORIZONTAL_SEAMS;
+    
+    /*== Constructors ==*/
+    
+    /**
+     * Constructs a SequenceCarver.
+     * 
+     * @param SEAM
+     *      the Seam whose energy function and threads are used.
+     * @param THRESHOLD
+     *      the largest change in any channel (0 to 255) a pixel
+     *      may go through without its maps being recomputed.
+     **/
+    public SequenceCarver( final Seam SEAM, final int THRESHOLD )
+    {
+        if ( 0 > THRESHOLD )
+            throw new IllegalArgumentException(
+                "threshold must not be negative" );
+        
+        this.SEAM             = SEAM;
+        this.THRESHOLD        = THRESHOLD;
+        this.VERTICAL_SEAMS   = new Pass( false );
+        this.HORIZONTAL_SEAMS = new Pass( true );
+    }
+    
+    /*== Mutators ==*/
+    
+    /**
+     * Resizes the next frame of the sequence. A frame of a
+     * different size than the last starts the maps over.
+     * 
+     * @param FRAME
+     *      the frame, which is left as it is.
+     * @param NEW_WIDTH
+     *      the width to resize it to, at least 1 and less than
+     *      twice its width.
+     * @param NEW_HEIGHT
+     *      the height to resize it to, at least 1 and less than
+     *      twice its height.
+     * @return
+     *      the resized frame.
+     * @throws IllegalArgumentException
+     *      if a new side is out of range.
+     **/
+    public UWECImage carve( final UWECImage FRAME,
+                            final int       NEW_WIDTH,
+                            final int       NEW_HEIGHT )
+    {
+        /* Local Variables */
+        UWECImage[] images;
+        
+        if ( 1 > NEW_WIDTH  || 2 * FRAME.getWidth()  <= NEW_WIDTH ||
+             1 > NEW_HEIGHT || 2 * FRAME.getHeight() <= NEW_HEIGHT )
+            throw new IllegalArgumentException(
+                "cannot resize " + FRAME.getWidth() + "x" +
+                FRAME.getHeight() + " to " + NEW_WIDTH + "x" + NEW_HEIGHT +
+                "; each side must be at least 1 and less than twice " +
+                "its size" );
+        
+        /* Carve Seams */
+        images = VERTICAL_SEAMS.carve( FRAME, FRAME.copy(),
+                                       FRAME.getWidth() - NEW_WIDTH );
+        images = HORIZONTAL_SEAMS.carve( images[0], images[1],
+                                         FRAME.getHeight() - NEW_HEIGHT );
+        images[1].compact();
+        return images[1];
+    }
+    
+    /*== Accessors ==*/
+    
+    /**
+     * Returns the number of map entries recomputed for the last
+     * frame, counting energy and path weights separately.
+     **/
+    public long getRecomputed()
+    {
+        return VERTICAL_SEAMS.recomputed + HORIZONTAL_SEAMS.recomputed;
+    }
+    
+    /**
+     * Returns the number of seams of the last frame that did not
+     * follow the same path as in the frame before.
+     **/
+    public int getSeamsMoved()
+    {
+        return VERTICAL_SEAMS.moved + HORIZONTAL_SEAMS.moved;
+    }
+    
+    /**
+     * Class to carve one direction of seams out of each frame.
+     **/
+    private class Pass
+    {
+        /* Instance Constants */
+        private final boolean HORIZONTAL;
+        
+        /* Instance Variables */
+        /**
+         * The pixels the maps were computed from, or null before
+         * the first frame.
+         **/
+        private UWECImage reference;
+        /**
+         * The maps of the reference, before any seam is removed.
+         **/
+        private SeamMaps  maps;
+        /**
+         * The same size as the reference and its maps, copied
+         * from them for each frame and then carved.
+         **/
+        private UWECImage work;
+        private SeamMaps  workMaps;
+        /**
+         * The seams removed from the last frame.
+         **/
+        private int[][]   seams;
+        private long      recomputed;
+        private int       moved;
+        
+        /*== Constructors ==*/
+        
+        private Pass( final boolean HORIZONTAL )
+        {
+            this.HORIZONTAL = HORIZONTAL;
+            this.seams      = new int[0][];
+        }
+        
+        /*== Mutators ==*/
+        
+        /**
+         * Brings the reference and its maps up to date with a
+         * frame, then removes seams found on the reference from
+         * both a copy of it and the output image. To grow, the
+         * seams are only removed from the copy, which is then
+         * reset, and both get a copy of each seam inserted.
+         * 
+         * @param FRAME
+         *      the frame to find seams for.
+         * @param out
+         *      the image to carve the same seams from; it is the
+         *      same size as FRAME.
+         * @param COUNT
+         *      the number of seams to remove, or if negative the
+         *      number to insert; less than the frame's span.
+         * @return
+         *      the carved copy of the reference, and out.
+         **/
+        private UWECImage[] carve( final UWECImage FRAME,
+                                   UWECImage       out,
+                                   final int       COUNT )
+        {
+            /* Local Constants */
+            final int     SEAMS = Math.abs( COUNT );
+            final boolean GROW  = 0 > COUNT;
+            
+            /* Local Variables */
+            int[]     seam = null;
+            
+            recomputed = 0;
+            moved      = 0;
+            if ( 0 == COUNT )
+            {
+                seams = new int[0][];
+                return new UWECImage[] { FRAME, out };
+            }
+            
+            /* Update the Reference */
+            if ( null == reference ||
+                 FRAME.getWidth()  != reference.getWidth() ||
+                 FRAME.getHeight() != reference.getHeight() )
+            {
+                reference = FRAME.copy();
+                maps = HORIZONTAL ?
+                       new SeamMaps( reference.getHeight(),
+                                     reference.getWidth(), false ) :
+                       new SeamMaps( reference.getWidth(),
+                                     reference.getHeight(), false );
+                SEAM.getEnergy( reference, HORIZONTAL, maps, null );
+                SEAM.getPathWeights( maps );
+                recomputed = 2L * maps.span * maps.LENGTH;
+                work       = reference.copy();
+                workMaps   = new SeamMaps( maps.STRIDE, maps.LENGTH, false );
+            }
+            else
+            {
+                update( FRAME );
+                work.copyFrom( reference );
+            }
+            
+            /* Carve a Copy */
+            workMaps.span = maps.span;
+            System.arraycopy( maps.ENERGY, 0, workMaps.ENERGY, 0,
+                              maps.ENERGY.length );
+            System.arraycopy( maps.PATH_WEIGHTS, 0, workMaps.PATH_WEIGHTS, 0,
+                              maps.PATH_WEIGHTS.length );
+            System.arraycopy( maps.DIRS, 0, workMaps.DIRS, 0,
+                              maps.DIRS.length );
+            if ( null != maps.stepLeft )
+            {
+                workMaps.chargeSteps();
+                System.arraycopy( maps.stepLeft, 0, workMaps.stepLeft, 0,
+                                  maps.stepLeft.length );
+                System.arraycopy( maps.stepRight, 0, workMaps.stepRight, 0,
+                                  maps.stepRight.length );
+            }
+            
+            seams = Arrays.copyOf( seams, SEAMS );
+            for ( int k = 0; k < SEAMS; k++ )
+            {
+                if ( 0 < k )
+                {
+                    SEAM.getEnergy( work, HORIZONTAL, workMaps, seam );
+                    SEAM.getPathWeights( workMaps, seam );
+                }
+                seam = SEAM.getSeam( workMaps );
+                if ( !Arrays.equals( seam, seams[k] ) )
+                    moved++;
+                seams[k] = seam;
+                
+                if ( HORIZONTAL )
+                    work.removeHorizontalSeam( seam );
+                else
+                    work.removeVerticalSeam( seam );
+                if ( GROW )
+                    continue;
+                if ( HORIZONTAL )
+                    out.removeHorizontalSeam( seam );
+                else
+                    out.removeVerticalSeam( seam );
+            }
+            
+            /* Insert the Seams Instead */
+            if ( GROW )
+            {
+                /* Block Variables */
+                int[][] inserted = unshift( seams );
+                
+                work.copyFrom( reference );
+                if ( HORIZONTAL )
+                {
+                    work.insertHorizontalSeams( inserted );
+                    out.insertHorizontalSeams( inserted );
+                }
+                else
+                {
+                    work.insertVerticalSeams( inserted );
+                    out.insertVerticalSeams( inserted );
+                }
+            }
+            return new UWECImage[] { work, out };
+        }
+        
+        /**
+         * Returns seams, each found after removing the ones before
+         * it, as they lie in the image before any was removed.
+         * They are then pixel-disjoint.
+         * 
+         * @param SEAMS
+         *      the seams in the order they were removed.
+         * @return
+         *      the seams in the reference's coordinates.
+         **/
+        private int[][] unshift( final int[][] SEAMS )
+        {
+            /* Local Constants */
+            final int[][] PLACED  = new int[SEAMS.length][maps.LENGTH];
+            final int[]   REMOVED = new int[SEAMS.length];
+            
+            for ( int j = 0; j < maps.LENGTH; j++ )
+                for ( int k = 0; k < SEAMS.length; k++ )
+                {
+                    /* Block Variables */
+                    int i = SEAMS[k][j];
+                    int r = 0;
+                    
+                    /* Skip Past the Pixels Already Removed */
+                    while ( r < k && REMOVED[r] <= i )
+                    {
+                        i++;
+                        r++;
+                    }
+                    System.arraycopy( REMOVED, r, REMOVED, r + 1, k - r );
+                    REMOVED[r]   = i;
+                    PLACED[k][j] = i;
+                }
+            return PLACED;
+        }
+        
+        /**
+         * Copies the pixels of a frame that changed by more than
+         * the threshold into the reference, and recomputes the
+         * maps wherever those pixels reach.
+         * <p>
+         * Energy is recomputed over each row's changed pixels
+         * widened by one, or the whole row if that wraps, and
+         * over the rows either side the energy function looks
+         * at. Path weights are then recomputed from the top over
+         * those pixels plus one either side of the pixels whose
+         * weight changed in the row above, narrowed after each
+         * row to the weights that really changed, as in
+         * Seam.getPathWeights.
+         * 
+         * @param FRAME
+         *      the frame, the same size as the reference.
+         **/
+        private void update( final UWECImage FRAME )
+        {
+            /* Local Constants */
+            final int    SPAN         = maps.span;
+            final int    LENGTH       = maps.LENGTH;
+            final int    STRIDE       = maps.STRIDE;
+            final int    DEPTH        = SEAM.getEnergyFunction().getDepth();
+            final int[]  SOURCE       = FRAME.getPixels();
+            final int[]  PIXELS       = reference.getPixels();
+            final int[]  PATH_WEIGHTS = maps.PATH_WEIGHTS;
+            final int[]  OLD          = maps.SPARE_ROW;
+            final int[]  FROM         = new int[LENGTH];
+            final int[]  TO           = new int[LENGTH];
+            
+            /* Local Variables */
+            int changedFrom = 0;
+            int changedTo   = 0;
+            
+            /* Take the Changed Pixels */
+            Arrays.fill( FROM, SPAN );
+            for ( int y = 0; y < FRAME.getHeight(); y++ )
+            {
+                /* Block Variables */
+                int src = y * FRAME.getStride();
+                int dst = y * reference.getStride();
+                
+                for ( int x = 0; x < FRAME.getWidth(); x++ )
+                    if ( changed( SOURCE[src + x], PIXELS[dst + x] ) )
+                    {
+                        int j = HORIZONTAL ? x : y;
+                        int i = HORIZONTAL ? y : x;
+                        
+                        PIXELS[dst + x] = SOURCE[src + x];
+                        FROM[j] = Math.min( FROM[j], i );
+                        TO[j]   = Math.max( TO[j], i + 1 );
+                    }
+            }
+            
+            for ( int j = 0; j < LENGTH; j++ )
+            {
+                /* Block Variables */
+                int row   = j * STRIDE;
+                int start = SPAN;
+                int end   = 0;
+                
+                /* Recompute Energy Near Changed Pixels */
+                for ( int r = j - DEPTH; r <= j + DEPTH; r++ )
+                {
+                    int near = ( r + LENGTH ) % LENGTH;
+                    if ( FROM[near] < TO[near] )
+                    {
+                        start = Math.min( start, FROM[near] - 1 );
+                        end   = Math.max( end, TO[near] + 1 );
+                    }
+                }
+                if ( start < 0 || end > SPAN )
+                {
+                    start = 0;
+                    end   = SPAN;
+                }
+                if ( start < end )
+                {
+                    SEAM.getEnergyFunction().energyRow(
+                        PIXELS, HORIZONTAL ? reference.getStride() : 1,
+                        HORIZONTAL ? 1 : reference.getStride(),
+                        maps, j, start, end );
+                    recomputed += end - start;
+                }
+                
+                /* Widen by the Weights Changed Above */
+                if ( changedFrom < changedTo )
+                {
+                    start = Math.max( Math.min( start, changedFrom - 1 ), 0 );
+                    end   = Math.min( Math.max( end, changedTo + 1 ), SPAN );
+                }
+                changedFrom = start;
+                changedTo   = start;
+                if ( start >= end )
+                    continue;
+                
+                /* Recompute Path Weights */
+                System.arraycopy( PATH_WEIGHTS, row + start,
+                                  OLD, start, end - start );
+                if ( 0 == j )
+                    System.arraycopy( maps.ENERGY, start,
+                                      PATH_WEIGHTS, start, end - start );
+                else
+                    Seam.pathWeightRow( maps, j, row - STRIDE, row,
+                                        start, end );
+                recomputed += end - start;
+                
+                /* Narrow to the Weights That Changed */
+                changedFrom = start;
+                while ( changedFrom < end &&
+                        PATH_WEIGHTS[row + changedFrom] == OLD[changedFrom] )
+                    changedFrom++;
+                changedTo = end;
+                while ( changedTo > changedFrom &&
+                        PATH_WEIGHTS[row + changedTo-1] == OLD[changedTo-1] )
+                    changedTo--;
+            }
+        }
+        
+        /**
+         * Returns whether any channel of two pixels differs by
+         * more than the threshold.
+         **/
+        private boolean changed( final int A, final int B )
+        {
+            for ( int shift = 0; shift < 24; shift += 8 )
+                if ( Math.abs( ( ( A >> shift ) & 255 ) -
+                               ( ( B >> shift ) & 255 ) ) > THRESHOLD )
+                    return true;
+            return false;
+        }
+    }
+}
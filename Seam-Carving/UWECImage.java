@@ -9,10 +9,22 @@ import java.awt.event.WindowEvent;
 import java.awt.image.*;
 import java.io.*;
 import java.awt.geom.*;
+import java.util.Arrays;
 
 public class UWECImage {
     private BufferedImage im;
     private ImagePanel theDisplay;
+
+    // Direct view of im's packed pixels (row-major, stride entries per row)
+    private int[] pixels;
+    private int stride;
+
+    // Logical size; smaller than im while seams are being carved in place
+    private int width;
+    private int height;
+    
+    // Where transposes and repaints are timed, or null
+    private SeamMetrics metrics;
     
     // Nested class for display
     private class ImagePanel extends JPanel {
@@ -71,39 +83,124 @@ public class UWECImage {
         File f = new File(filename);
 
         try {
-            this.im = ImageIO.read(f);
+            if (RawImage.isRaw(filename))
+                this.im = RawImage.read(f.toPath()).im;
+            else
+                this.im = toIntRGB(ImageIO.read(f));
 
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
+        bindRaster();
     }
 
     // Make a blank image given the size
     public UWECImage(int x, int y) {
+        // A fresh TYPE_INT_RGB raster is zero-filled, i.e. already black
         this.im = new BufferedImage(x, y, BufferedImage.TYPE_INT_RGB);
+        bindRaster();
+    }
+
+    /**
+     * Makes an image from one that has already been decoded,
+     * converting it to TYPE_INT_RGB if it is not already.
+     **/
+    public UWECImage( BufferedImage image )
+    {
+        this.im = toIntRGB( image );
+        bindRaster();
+    }
+
+    /**
+     * Converts a decoded image to TYPE_INT_RGB so its pixels can be
+     * addressed directly through a DataBufferInt.
+     **/
+    private static BufferedImage toIntRGB( BufferedImage src )
+    {
+        if ( BufferedImage.TYPE_INT_RGB == src.getType() )
+            return src;
+
+        BufferedImage dst = new BufferedImage( src.getWidth(),
+                                               src.getHeight(),
+                                               BufferedImage.TYPE_INT_RGB );
+        Graphics2D g2 = dst.createGraphics();
+        g2.drawImage( src, 0, 0, null );
+        g2.dispose();
+        return dst;
+    }
+
+    /**
+     * Points the pixel view at the backing DataBufferInt of im.
+     **/
+    private void bindRaster()
+    {
+        WritableRaster raster = im.getRaster();
+        SinglePixelPackedSampleModel sm =
+            (SinglePixelPackedSampleModel)raster.getSampleModel();
 
-        // Create a graphics context for the new BufferedImage
-        Graphics2D g2 = this.im.createGraphics();
+        this.pixels = ( (DataBufferInt)raster.getDataBuffer() ).getData();
+        this.stride = sm.getScanlineStride();
+        this.width  = im.getWidth();
+        this.height = im.getHeight();
+    }
+
+    /**
+     * Returns the packed 0xRRGGBB pixels backing this image.
+     * Pixel (x, y) lives at index y * getStride() + x; writes
+     * go straight to the image.
+     **/
+    public int[] getPixels()
+    {
+        return pixels;
+    }
+
+    /**
+     * Returns the number of array entries between the
+     * starts of consecutive rows in getPixels().
+     **/
+    public int getStride()
+    {
+        return stride;
+    }
 
-        // Fill in the image with black
-        g2.setColor(Color.black);
-        g2.fillRect(0, 0, x, y);
+    /**
+     * Copies row y into dst, starting at dst[off].
+     **/
+    public void getRow( int y, int[] dst, int off )
+    {
+        System.arraycopy( pixels, y * stride, dst, off, getWidth() );
+    }
+
+    /**
+     * Overwrites row y with the pixels in src, starting at src[off].
+     **/
+    public void setRow( int y, int[] src, int off )
+    {
+        System.arraycopy( src, off, pixels, y * stride, getWidth() );
+    }
+
+    /**
+     * Returns the packed 0xRRGGBB value of pixel (x, y).
+     **/
+    public int getRGB( int x, int y )
+    {
+        return pixels[y * stride + x];
     }
 
     public int getWidth() {
-        return im.getWidth();
+        return width;
     }
 
     public int getHeight() {
-        return im.getHeight();
+        return height;
     }
 
     public int getRed(int x, int y) {
         int value = 0;
 
-        if ((x >= 0) && (y >= 0) && (x < im.getWidth()) && (y < im.getHeight())) {
-            value = ((im.getRGB(x, y) >> 16) & 255);
+        if ((x >= 0) && (y >= 0) && (x < width) && (y < height)) {
+            value = ((pixels[y * stride + x] >> 16) & 255);
         }
 
         return value;
@@ -112,8 +209,8 @@ public class UWECImage {
     public int getGreen(int x, int y) {
         int value = 0;
 
-        if ((x >= 0) && (y >= 0) && (x < im.getWidth()) && (y < im.getHeight())) {
-            value = ((im.getRGB(x, y) >> 8) & 255);
+        if ((x >= 0) && (y >= 0) && (x < width) && (y < height)) {
+            value = ((pixels[y * stride + x] >> 8) & 255);
         }
 
         return value;
@@ -122,8 +219,8 @@ public class UWECImage {
     public int getBlue(int x, int y) {
         int value = 0;
 
-        if ((x >= 0) && (y >= 0) && (x < im.getWidth()) && (y < im.getHeight())) {
-            value = ((im.getRGB(x, y) >> 0) & 255);
+        if ((x >= 0) && (y >= 0) && (x < width) && (y < height)) {
+            value = ((pixels[y * stride + x] >> 0) & 255);
         }
 
         return value;
@@ -131,11 +228,22 @@ public class UWECImage {
 
     public void setRGB(int x, int y, int red, int green, int blue) {
         int pixel = (red << 16) + (green << 8) + (blue);
-        im.setRGB(x, y, pixel);
+        pixels[y * stride + x] = pixel;
     }
 
     public void draw(Graphics g) {
-        g.drawImage(im, 0, 0, null);
+        g.drawImage(im, 0, 0, width, height, 0, 0, width, height, null);
+    }
+
+    /**
+     * Returns the image backing this one, compacted to its
+     * logical size. Unlike write, this never touches AWT
+     * display classes, so it is safe on a headless JVM.
+     **/
+    public BufferedImage getBufferedImage()
+    {
+        compact();
+        return im;
     }
 
     public void write( String filename )
@@ -144,8 +252,14 @@ public class UWECImage {
         String format = filename.substring( formatIndex );
         File f = new File( filename );
         boolean success;
+        compact();
         try
         {
+            if ( RawImage.isRaw( filename ) )
+            {
+                RawImage.write( this, f.toPath() );
+                return;
+            }
             success = ImageIO.write( this.im, format, f );
             if ( !success )
             {
@@ -187,22 +301,34 @@ public class UWECImage {
         /* Local Constants */
         final int HEIGHT = getHeight();
         final int WIDTH  = getWidth();
+        final long START = null == metrics ? 0 : System.nanoTime();
+        final PhaseEvent EVENT = null == metrics ? null : PhaseEvent.start();
         
         /* Local Variables */
         UWECImage imT = new UWECImage( HEIGHT, WIDTH );
+        int[] src = pixels;
+        int[] dst = imT.pixels;
         
         /* Transpose Image */
         for ( int j = 0; j < HEIGHT; j++ )
             for ( int i = 0; i < WIDTH; i++ )
-                imT.im.setRGB( j, i, im.getRGB(i,j) );
+                dst[i * imT.stride + j] = src[j * stride + i];
         
+        if ( null != metrics )
+            metrics.record( SeamMetrics.Phase.TRANSPOSE, START, EVENT,
+                            (long)WIDTH * HEIGHT );
         return imT;
     }
 
     public UWECImage transposeR()
     {
+        long start = null == metrics ? 0 : System.nanoTime();
+        PhaseEvent event = null == metrics ? null : PhaseEvent.start();
         UWECImage imT = new UWECImage( getHeight(), getWidth() );
         transposeR( imT, 0, getWidth(), 0, getHeight() );
+        if ( null != metrics )
+            metrics.record( SeamMetrics.Phase.TRANSPOSE, start, event,
+                            (long)width * height );
         return imT;
     }
     
@@ -216,7 +342,7 @@ public class UWECImage {
         if ( 64 >= m && 64 >= n )
             for ( int i = mStart; i < mEnd; i++ )
                 for ( int j = nStart; j < nEnd; j++ )
-                    imT.im.setRGB( j, i, im.getRGB(i,j) );
+                    imT.pixels[i * imT.stride + j] = pixels[j * stride + i];
         else
             if ( m > n )
             {
@@ -240,26 +366,336 @@ public class UWECImage {
         
         for ( int j = 0; j < getHeight(); j++ )
         {
-            for ( int i = 0; i < seam[j]; i++ )
-                im2.im.setRGB( i, j, im.getRGB(i,j) );
-            for ( int i = seam[j]+1; i < getWidth(); i++ )
-                im2.im.setRGB( i-1, j, im.getRGB(i,j) );
+            int src = j * stride;
+            int dst = j * im2.stride;
+            System.arraycopy( pixels, src, im2.pixels, dst, seam[j] );
+            System.arraycopy( pixels, src + seam[j] + 1,
+                              im2.pixels, dst + seam[j],
+                              getWidth() - seam[j] - 1 );
         }
         return im2;
     }
     
+    /**
+     * Removes a vertical seam in place by shifting the tail of
+     * each row left by one pixel. The backing buffer keeps its
+     * size; only the logical width shrinks.
+     * 
+     * @param seam
+     *      the x coordinate of the seam in each row.
+     **/
+    public void removeVerticalSeam( int[] seam )
+    {
+        for ( int j = 0; j < height; j++ )
+        {
+            int row = j * stride;
+            System.arraycopy( pixels, row + seam[j] + 1,
+                              pixels, row + seam[j],
+                              width - seam[j] - 1 );
+        }
+        width--;
+    }
+    
+    /**
+     * Removes a horizontal seam in place by shifting each
+     * column up by one pixel below the seam. Rows are walked
+     * in order so the copy stays sequential in memory; only
+     * the logical height shrinks.
+     * 
+     * @param seam
+     *      the y coordinate of the seam in each column.
+     **/
+    public void removeHorizontalSeam( int[] seam )
+    {
+        int top = height;
+        for ( int i = 0; i < width; i++ )
+            if ( seam[i] < top )
+                top = seam[i];
+        
+        for ( int j = top; j < height - 1; j++ )
+        {
+            int row = j * stride;
+            for ( int i = 0; i < width; i++ )
+                if ( seam[i] <= j )
+                    pixels[row + i] = pixels[row + stride + i];
+        }
+        height--;
+    }
+    
+    /**
+     * Removes several pixel-disjoint vertical seams in place in
+     * a single sweep. Each row is compacted once, moving the
+     * runs between its removed pixels left with System.arraycopy.
+     * 
+     * @param seams
+     *      the seams, each giving an x coordinate per row. No two
+     *      seams may share a pixel.
+     **/
+    public void removeVerticalSeams( int[][] seams )
+    {
+        int[] cuts = new int[seams.length];
+        
+        for ( int j = 0; j < height; j++ )
+        {
+            int row = j * stride;
+            for ( int s = 0; s < seams.length; s++ )
+                cuts[s] = seams[s][j];
+            Arrays.sort( cuts );
+            
+            int to = cuts[0];
+            for ( int s = 0; s < cuts.length; s++ )
+            {
+                int from = cuts[s] + 1;
+                int end  = s+1 < cuts.length ? cuts[s+1] : width;
+                System.arraycopy( pixels, row + from, pixels, row + to,
+                                  end - from );
+                to += end - from;
+            }
+        }
+        width -= seams.length;
+    }
+    
+    /**
+     * Removes several pixel-disjoint horizontal seams in place in
+     * a single sweep. Rows are written in order, each column
+     * pulling from the first source row it has not skipped.
+     * 
+     * @param seams
+     *      the seams, each giving a y coordinate per column. No two
+     *      seams may share a pixel.
+     **/
+    public void removeHorizontalSeams( int[][] seams )
+    {
+        int[][] cuts    = new int[width][seams.length];
+        int[]   skipped = new int[width];
+        
+        for ( int i = 0; i < width; i++ )
+        {
+            for ( int s = 0; s < seams.length; s++ )
+                cuts[i][s] = seams[s][i];
+            Arrays.sort( cuts[i] );
+        }
+        
+        for ( int j = 0; j < height - seams.length; j++ )
+        {
+            int row = j * stride;
+            for ( int i = 0; i < width; i++ )
+            {
+                int k = skipped[i];
+                while ( k < seams.length && cuts[i][k] <= j + k )
+                    k++;
+                skipped[i] = k;
+                pixels[row + i] = pixels[row + k * stride + i];
+            }
+        }
+        height -= seams.length;
+    }
+    
+    /**
+     * Widens the image by inserting a pixel after every pixel of
+     * several pixel-disjoint vertical seams in a single sweep.
+     * Each inserted pixel averages the seam pixel with its right
+     * neighbor.
+     * 
+     * @param seams
+     *      the seams, each giving an x coordinate per row. No two
+     *      seams may share a pixel.
+     **/
+    public void insertVerticalSeams( int[][] seams )
+    {
+        UWECImage grown = new UWECImage( width + seams.length, height );
+        int[]     cuts  = new int[seams.length];
+        
+        for ( int j = 0; j < height; j++ )
+        {
+            int row  = j * stride;
+            int to   = j * grown.stride;
+            int from = 0;
+            for ( int s = 0; s < seams.length; s++ )
+                cuts[s] = seams[s][j];
+            Arrays.sort( cuts );
+            
+            for ( int s = 0; s < cuts.length; s++ )
+            {
+                int cut  = cuts[s];
+                int next = Math.min( cut + 1, width - 1 );
+                System.arraycopy( pixels, row + from, grown.pixels, to,
+                                  cut + 1 - from );
+                to += cut + 1 - from;
+                grown.pixels[to++] = average( pixels[row + cut],
+                                              pixels[row + next] );
+                from = cut + 1;
+            }
+            System.arraycopy( pixels, row + from, grown.pixels, to,
+                              width - from );
+        }
+        switchImage( grown );
+    }
+    
+    /**
+     * Heightens the image by inserting a pixel below every pixel
+     * of several pixel-disjoint horizontal seams in a single
+     * sweep. Source rows are read in order, each column pushing
+     * down by the number of seams it has passed so far.
+     * 
+     * @param seams
+     *      the seams, each giving a y coordinate per column. No two
+     *      seams may share a pixel.
+     **/
+    public void insertHorizontalSeams( int[][] seams )
+    {
+        UWECImage grown    = new UWECImage( width, height + seams.length );
+        int[][]   cuts     = new int[width][seams.length];
+        int[]     inserted = new int[width];
+        
+        for ( int i = 0; i < width; i++ )
+        {
+            for ( int s = 0; s < seams.length; s++ )
+                cuts[i][s] = seams[s][i];
+            Arrays.sort( cuts[i] );
+        }
+        
+        for ( int j = 0; j < height; j++ )
+        {
+            int row   = j * stride;
+            int below = Math.min( j + 1, height - 1 ) * stride;
+            for ( int i = 0; i < width; i++ )
+            {
+                int k  = inserted[i];
+                int to = ( j + k ) * grown.stride + i;
+                grown.pixels[to] = pixels[row + i];
+                if ( k < seams.length && cuts[i][k] == j )
+                {
+                    grown.pixels[to + grown.stride] =
+                        average( pixels[row + i], pixels[below + i] );
+                    inserted[i] = k + 1;
+                }
+            }
+        }
+        switchImage( grown );
+    }
+    
+    /**
+     * Returns the per-channel average of two RGB values,
+     * rounding down.
+     **/
+    private static int average( int a, int b )
+    {
+        return ( ( ( a ^ b ) & 0xFEFEFE ) >> 1 ) + ( a & b & 0xFFFFFF );
+    }
+    
+    /**
+     * Returns a copy of this image at half the size, each pixel
+     * the average of a 2x2 block. An odd last row or column is
+     * averaged with itself. The copy has no display window.
+     **/
+    public UWECImage halve()
+    {
+        UWECImage half = new UWECImage( ( width + 1 ) / 2, ( height + 1 ) / 2 );
+        
+        for ( int y = 0; y < half.height; y++ )
+        {
+            int top    = 2 * y * stride;
+            int bottom = Math.min( 2 * y + 1, height - 1 ) * stride;
+            int out    = y * half.stride;
+            for ( int x = 0; x < half.width; x++ )
+            {
+                int left  = 2 * x;
+                int right = Math.min( 2 * x + 1, width - 1 );
+                half.pixels[out + x] =
+                    average( average( pixels[top + left],
+                                      pixels[top + right] ),
+                             average( pixels[bottom + left],
+                                      pixels[bottom + right] ) );
+            }
+        }
+        return half;
+    }
+    
+    /**
+     * Returns a tight copy of this image's pixels. The copy
+     * has no display window.
+     **/
+    public UWECImage copy()
+    {
+        UWECImage c = new UWECImage( width, height );
+        for ( int j = 0; j < height; j++ )
+            System.arraycopy( pixels, j * stride,
+                              c.pixels, j * c.stride, width );
+        return c;
+    }
+    
+    /**
+     * Copies another image's pixels into this one and takes its
+     * size, reusing this image's backing buffer, so an image that
+     * seams were removed from can be reset without allocating.
+     * 
+     * @param src
+     *      the image to copy; it must fit in the backing buffer.
+     **/
+    public void copyFrom( UWECImage src )
+    {
+        if ( src.width > im.getWidth() || src.height > im.getHeight() )
+            throw new IllegalArgumentException(
+                src.width + "x" + src.height + " does not fit in " +
+                im.getWidth() + "x" + im.getHeight() );
+        
+        for ( int j = 0; j < src.height; j++ )
+            System.arraycopy( src.pixels, j * src.stride,
+                              pixels, j * stride, src.width );
+        width  = src.width;
+        height = src.height;
+    }
+    
+    /**
+     * Reallocates the backing image to exactly the logical size,
+     * dropping any columns or rows freed by in-place seam removal.
+     * Does nothing if the image is already tight.
+     **/
+    public void compact()
+    {
+        if ( width == im.getWidth() && height == im.getHeight() )
+            return;
+        
+        switchImage( copy() );
+    }
+    
     // To pop up a new window for this image
     public void openNewDisplayWindow() {
         this.theDisplay = new ImagePanel(this);
     }
     
     // To mutate the existing window to fit the image's current dimensions and pixels
+    // Does nothing if no window was opened
     public void repaintCurrentDisplayWindow() {
+        if (this.theDisplay == null)
+            return;
+        long start = null == metrics ? 0 : System.nanoTime();
+        PhaseEvent event = null == metrics ? null : PhaseEvent.start();
         this.theDisplay.changeImage(this);
         this.theDisplay.repaint();      
+        if (metrics != null)
+            metrics.record(SeamMetrics.Phase.REPAINT, start, event,
+                           (long)width * height);
+    }
+    
+    /**
+     * Sets where the time spent transposing and repainting this
+     * image is recorded. Copies of the image do not inherit it.
+     * 
+     * @param metrics
+     *      the metrics, or null to time nothing.
+     **/
+    public void setMetrics( SeamMetrics metrics )
+    {
+        this.metrics = metrics;
     }
     
     public void switchImage(UWECImage theNewImage) {
         this.im = theNewImage.im;
+        this.pixels = theNewImage.pixels;
+        this.stride = theNewImage.stride;
+        this.width  = theNewImage.width;
+        this.height = theNewImage.height;
     }
 }
@@ -0,0 +1,288 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Class holding the same energy functions as ScalarEnergy,
+ * computed a vector of pixels at a time with the incubating
+ * Vector API.
+ * <p>
+ * Only rows whose pixels are adjacent in memory (vertical
+ * seams) are vectorized; the wrapped edge pixels, the tail of
+ * each row, and every row of a horizontal seam are handed to
+ * ScalarEnergy, so results are identical.
+ * <p>
+ * This class is kept apart because it needs the module at
+ * both compile and run time:
+ * <pre>
+ *     javac --add-modules jdk.incubator.vector -d out *.java vector/*.java
+ *     java  --add-modules jdk.incubator.vector -cp out SeamDemo ...
+ * </pre>
+ * Without it, Energies falls back to ScalarEnergy.
+ **/
+
+public enum VectorEnergy implements EnergyFunction
+{
+    GRADIENT( ScalarEnergy.GRADIENT )
+    {
+        @Override
+        int energyVectors( final int[]    PIXELS,
+                           final int      ROW,
+                           final int      ALONG,
+                           final SeamMaps maps,
+                           final int      J,
+                           final int      FROM,
+                           final int      LAST )
+        {
+            /* Local Constants */
+            final int OUT = J * maps.STRIDE;
+            
+            /* Local Variables */
+            int i = FROM;
+            
+            for ( ; i + STEP <= LAST; i += STEP )
+                gradient( IntVector.fromArray( SPECIES, PIXELS, ROW + i-1 ),
+                          IntVector.fromArray( SPECIES, PIXELS, ROW + i+1 ) )
+                    .intoArray( maps.ENERGY, OUT + i );
+            return i;
+        }
+    },
+    
+    DUAL_GRADIENT( ScalarEnergy.DUAL_GRADIENT )
+    {
+        @Override
+        int energyVectors( final int[]    PIXELS,
+                           final int      ROW,
+                           final int      ALONG,
+                           final SeamMaps maps,
+                           final int      J,
+                           final int      FROM,
+                           final int      LAST )
+        {
+            /* Local Constants */
+            final int UP   = ScalarEnergy.prev( J, maps.LENGTH ) * ALONG;
+            final int DOWN = ScalarEnergy.next( J, maps.LENGTH ) * ALONG;
+            final int OUT  = J * maps.STRIDE;
+            
+            /* Local Variables */
+            int i = FROM;
+            
+            for ( ; i + STEP <= LAST; i += STEP )
+                gradient( IntVector.fromArray( SPECIES, PIXELS, ROW + i-1 ),
+                          IntVector.fromArray( SPECIES, PIXELS, ROW + i+1 ) )
+                    .add( gradient( IntVector.fromArray( SPECIES, PIXELS,
+                                                         UP + i ),
+                                    IntVector.fromArray( SPECIES, PIXELS,
+                                                         DOWN + i ) ) )
+                    .intoArray( maps.ENERGY, OUT + i );
+            return i;
+        }
+    },
+    
+    SOBEL( ScalarEnergy.SOBEL )
+    {
+        @Override
+        int energyVectors( final int[]    PIXELS,
+                           final int      ROW,
+                           final int      ALONG,
+                           final SeamMaps maps,
+                           final int      J,
+                           final int      FROM,
+                           final int      LAST )
+        {
+            /* Local Constants */
+            final int UP   = ScalarEnergy.prev( J, maps.LENGTH ) * ALONG;
+            final int DOWN = ScalarEnergy.next( J, maps.LENGTH ) * ALONG;
+            final int OUT  = J * maps.STRIDE;
+            
+            /* Local Variables */
+            int i = FROM;
+            
+            for ( ; i + STEP <= LAST; i += STEP )
+            {
+                /* Block Variables */
+                int       up  = UP + i;
+                int       mid = ROW + i;
+                int       dn  = DOWN + i;
+                IntVector ul  = IntVector.fromArray( SPECIES, PIXELS, up-1 );
+                IntVector um  = IntVector.fromArray( SPECIES, PIXELS, up );
+                IntVector ur  = IntVector.fromArray( SPECIES, PIXELS, up+1 );
+                IntVector ml  = IntVector.fromArray( SPECIES, PIXELS, mid-1 );
+                IntVector mr  = IntVector.fromArray( SPECIES, PIXELS, mid+1 );
+                IntVector dl  = IntVector.fromArray( SPECIES, PIXELS, dn-1 );
+                IntVector dm  = IntVector.fromArray( SPECIES, PIXELS, dn );
+                IntVector dr  = IntVector.fromArray( SPECIES, PIXELS, dn+1 );
+                IntVector sum = IntVector.zero( SPECIES );
+                
+                for ( int shift = 0; shift < 24; shift += 8 )
+                {
+                    IntVector cul = channel( ul, shift );
+                    IntVector cur = channel( ur, shift );
+                    IntVector cdl = channel( dl, shift );
+                    IntVector cdr = channel( dr, shift );
+                    
+                    IntVector across = cur.add( cdr ).sub( cul ).sub( cdl )
+                        .add( channel( mr, shift ).sub( channel( ml, shift ) )
+                              .lanewise( VectorOperators.LSHL, 1 ) );
+                    IntVector along  = cdl.add( cdr ).sub( cul ).sub( cur )
+                        .add( channel( dm, shift ).sub( channel( um, shift ) )
+                              .lanewise( VectorOperators.LSHL, 1 ) );
+                    sum = sum.add( across.mul( across ) )
+                             .add( along.mul( along ) );
+                }
+                sum.lanewise( VectorOperators.ASHR, 4 )
+                   .intoArray( maps.ENERGY, OUT + i );
+            }
+            return i;
+        }
+    },
+    
+    FORWARD( ScalarEnergy.FORWARD )
+    {
+        @Override
+        int energyVectors( final int[]    PIXELS,
+                           final int      ROW,
+                           final int      ALONG,
+                           final SeamMaps maps,
+                           final int      J,
+                           final int      FROM,
+                           final int      LAST )
+        {
+            /* Local Constants */
+            final int UP  = ROW - ALONG;
+            final int OUT = J * maps.STRIDE;
+            
+            /* Local Variables */
+            int i = FROM;
+            
+            maps.chargeSteps();
+            for ( ; i + STEP <= LAST; i += STEP )
+            {
+                /* Block Variables */
+                IntVector left  = IntVector.fromArray( SPECIES, PIXELS,
+                                                       ROW + i-1 );
+                IntVector right = IntVector.fromArray( SPECIES, PIXELS,
+                                                       ROW + i+1 );
+                
+                gradient( left, right ).intoArray( maps.ENERGY, OUT + i );
+                if ( 0 < J )
+                {
+                    /* Block Variables */
+                    IntVector up = IntVector.fromArray( SPECIES, PIXELS,
+                                                        UP + i );
+                    
+                    gradient( up, left ).intoArray( maps.stepLeft, OUT + i );
+                    gradient( up, right ).intoArray( maps.stepRight,
+                                                     OUT + i );
+                }
+                else
+                {
+                    ZERO.intoArray( maps.stepLeft, OUT + i );
+                    ZERO.intoArray( maps.stepRight, OUT + i );
+                }
+            }
+            return i;
+        }
+    };
+    
+    /* Class Constants */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+    private static final int STEP = SPECIES.length();
+    private static final IntVector ZERO = IntVector.zero( SPECIES );
+    
+    /* Instance Constants */
+    /**
+     * The same function computed a pixel at a time.
+     **/
+    private final ScalarEnergy SCALAR;
+    
+    /*== Constructors ==*/
+    
+    private VectorEnergy( final ScalarEnergy SCALAR )
+    {
+        this.SCALAR = SCALAR;
+    }
+    
+    /*== Accessors ==*/
+    
+    @Override
+    public int getDepth()
+    {
+        return SCALAR.getDepth();
+    }
+    
+    @Override
+    public boolean chargesSteps()
+    {
+        return SCALAR.chargesSteps();
+    }
+    
+    @Override
+    public void energyRow( final int[]    PIXELS,
+                           final int      ACROSS,
+                           final int      ALONG,
+                           final SeamMaps maps,
+                           final int      J,
+                           final int      FROM,
+                           final int      TO )
+    {
+        /* Local Constants */
+        final int FIRST = Math.max( FROM, 1 );
+        final int LAST  = Math.min( TO, maps.span - 1 );
+        
+        /* Local Variables */
+        int i;
+        
+        if ( 1 != ACROSS )
+        {
+            SCALAR.energyRow( PIXELS, ACROSS, ALONG, maps, J, FROM, TO );
+            return;
+        }
+        
+        /* Edges and Tail */
+        if ( FROM < FIRST )
+            SCALAR.energyRow( PIXELS, ACROSS, ALONG, maps, J, FROM,
+                              Math.min( FIRST, TO ) );
+        i = energyVectors( PIXELS, J * ALONG, ALONG, maps, J, FIRST, LAST );
+        if ( i < TO )
+            SCALAR.energyRow( PIXELS, ACROSS, ALONG, maps, J, i, TO );
+    }
+    
+    /**
+     * Fills whole vectors of row J from FROM up to LAST, none of
+     * whose pixels is on an edge, and returns the first pixel not
+     * filled.
+     **/
+    abstract int energyVectors( int[]    PIXELS,
+                                int      ROW,
+                                int      ALONG,
+                                SeamMaps maps,
+                                int      J,
+                                int      FROM,
+                                int      LAST );
+    
+    /**
+     * Extracts one 8-bit channel from a vector of packed pixels.
+     **/
+    private static IntVector channel( final IntVector V, final int SHIFT )
+    {
+        return V.lanewise( VectorOperators.LSHR, SHIFT ).and( 255 );
+    }
+    
+    /**
+     * Computes the squared RGB distance between two vectors of
+     * packed 0xRRGGBB pixels.
+     **/
+    private static IntVector gradient( final IntVector A, final IntVector B )
+    {
+        /* Local Constants */
+        final IntVector DELTA_RED   = channel( A, 16 ).sub( channel( B, 16 ) );
+        final IntVector DELTA_GREEN = channel( A,  8 ).sub( channel( B,  8 ) );
+        final IntVector DELTA_BLUE  = channel( A,  0 ).sub( channel( B,  0 ) );
+        
+        return DELTA_RED.mul( DELTA_RED )
+                        .add( DELTA_GREEN.mul( DELTA_GREEN ) )
+                        .add( DELTA_BLUE.mul( DELTA_BLUE ) );
+    }
+}
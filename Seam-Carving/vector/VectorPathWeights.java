@@ -0,0 +1,134 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Class to run the inner loop of the path weight pass a vector
+ * of pixels at a time with the incubating Vector API.
+ * <p>
+ * The three candidates above each pixel are three overlapping
+ * loads of the row above; two lanewise compares pick the
+ * cheapest, and the same masks pick the direction, which is
+ * narrowed to bytes on the way out. The
+ * compares are strict and made left to right, so ties go to
+ * the leftmost candidate and the maps are identical to the
+ * scalar ones. Step costs, when the energy function charges
+ * them, are added to the diagonal candidates before the
+ * compares. The tail of each run is handed to the scalar
+ * loop.
+ * <p>
+ * Like VectorEnergy, this needs the module at both compile and
+ * run time; without it Seam uses the scalar loop.
+ **/
+
+final class VectorPathWeights implements PathWeightKernel
+{
+    /* Class Constants */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+    private static final int STEP = SPECIES.length();
+    /**
+     * Byte vectors with as many lanes as SPECIES.
+     **/
+    private static final VectorSpecies<Byte> BYTES =
+        VectorSpecies.of( byte.class, VectorShape.forBitSize( STEP * 8 ) );
+    private static final IntVector NW = IntVector.broadcast( SPECIES,
+                                                             Seam.NW );
+    
+    /*== Accessors ==*/
+    
+    @Override
+    public void middleRow( final int[]  PATH_WEIGHT,
+                           final byte[] DIRS,
+                           final int[]  ENERGY,
+                           final int    PREV,
+                           final int    CUR,
+                           final int    ROW,
+                           final int    FROM,
+                           final int    TO )
+    {
+        /* Local Constants */
+        final int TAIL = middleVectors( PATH_WEIGHT, DIRS, ENERGY, null, null,
+                                        PREV, CUR, ROW, FROM, TO );
+        
+        Seam.middleRow( PATH_WEIGHT, DIRS, ENERGY, PREV, CUR, ROW, TAIL, TO );
+    }
+    
+    @Override
+    public void middleRow( final int[]  PATH_WEIGHT,
+                           final byte[] DIRS,
+                           final int[]  ENERGY,
+                           final int[]  STEP_LEFT,
+                           final int[]  STEP_RIGHT,
+                           final int    PREV,
+                           final int    CUR,
+                           final int    ROW,
+                           final int    FROM,
+                           final int    TO )
+    {
+        /* Local Constants */
+        final int TAIL = middleVectors( PATH_WEIGHT, DIRS, ENERGY,
+                                        STEP_LEFT, STEP_RIGHT,
+                                        PREV, CUR, ROW, FROM, TO );
+        
+        Seam.middleRow( PATH_WEIGHT, DIRS, ENERGY, STEP_LEFT, STEP_RIGHT,
+                        PREV, CUR, ROW, TAIL, TO );
+    }
+    
+    /**
+     * Calculates whole vectors of pixels from FROM up to TO,
+     * adding the step costs to the diagonal candidates unless
+     * they are null, and returns the first pixel not calculated.
+     **/
+    private static int middleVectors( final int[]  PATH_WEIGHT,
+                                      final byte[] DIRS,
+                                      final int[]  ENERGY,
+                                      final int[]  STEP_LEFT,
+                                      final int[]  STEP_RIGHT,
+                                      final int    PREV,
+                                      final int    CUR,
+                                      final int    ROW,
+                                      final int    FROM,
+                                      final int    TO )
+    {
+        /* Local Variables */
+        int i = FROM;
+        
+        for ( ; i + STEP <= TO; i += STEP )
+        {
+            /* Block Variables */
+            IntVector weight = IntVector.fromArray( SPECIES, PATH_WEIGHT,
+                                                    PREV + i-1 );
+            IntVector n      = IntVector.fromArray( SPECIES, PATH_WEIGHT,
+                                                    PREV + i );
+            IntVector ne     = IntVector.fromArray( SPECIES, PATH_WEIGHT,
+                                                    PREV + i+1 );
+            VectorMask<Integer> toN;
+            VectorMask<Integer> toNE;
+            
+            if ( null != STEP_LEFT )
+            {
+                weight = weight.add( IntVector.fromArray( SPECIES, STEP_LEFT,
+                                                          ROW + i ) );
+                ne     = ne.add( IntVector.fromArray( SPECIES, STEP_RIGHT,
+                                                      ROW + i ) );
+            }
+            
+            /* Calculate Weights */
+            toN    = n.lt( weight );
+            weight = weight.blend( n, toN );
+            toNE   = ne.lt( weight );
+            weight = weight.blend( ne, toNE );
+            
+            weight.add( IntVector.fromArray( SPECIES, ENERGY, ROW + i ) )
+                  .intoArray( PATH_WEIGHT, CUR + i );
+            NW.blend( Seam.N, toN ).blend( Seam.NE, toNE )
+              .convertShape( VectorOperators.I2B, BYTES, 0 )
+              .reinterpretAsBytes()
+              .intoArray( DIRS, ROW + i );
+        }
+        return i;
+    }
+}